@@ -22,8 +22,8 @@ import com.querykeeper.annotation.ExpectTime;
 /**
  * This test was verified on Java 8 with Spring Boot 2.7
  */
-@SpringBootTest
 @EnableQueryKeeper
+@SpringBootTest
 class UserRepositoryTest {
 
     @Autowired
@@ -0,0 +1,143 @@
+package com.querykeeper.benchmark;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.querykeeper.annotation.ExpectBatch;
+import com.querykeeper.annotation.ExpectNoNPlusOne;
+import com.querykeeper.annotation.ExpectQuery;
+import com.querykeeper.annotation.ExpectRows;
+import com.querykeeper.collector.LoggingDataSource;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.engine.BatchAssertionEngine;
+import com.querykeeper.engine.DuplicateQueryAssertionEngine;
+import com.querykeeper.engine.NPlusOneAssertionEngine;
+import com.querykeeper.engine.QueryAssertionEngine;
+import com.querykeeper.engine.QueryListView;
+import com.querykeeper.engine.RowsAssertionEngine;
+
+/**
+ * End-of-test cost of the assertion engines over a context holding
+ * {@code queries} captured queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AssertionEngineBenchmark {
+
+    @Param({ "100", "10000" })
+    public int queries;
+
+    private QueryKeeperContext context;
+    private Method method;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Connection connection = new LoggingDataSource(H2Database.create("engines")).getConnection();
+        context = QueryKeeperContext.open();
+        try (PreparedStatement select = connection.prepareStatement("select id, name from member where id = ?");
+                PreparedStatement update = connection.prepareStatement("update member set age = ? where id = ?")) {
+            for (int i = 0; i < queries; i++) {
+                if (i % 4 == 0) {
+                    update.setInt(1, i % 50);
+                    update.setLong(2, i % H2Database.ROWS);
+                    update.executeUpdate();
+                } else {
+                    select.setLong(1, i % H2Database.ROWS);
+                    consume(select.executeQuery());
+                }
+            }
+        }
+        connection.close();
+        method = AssertionEngineBenchmark.class.getDeclaredMethod("annotated");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        QueryKeeperContext.clear();
+    }
+
+    @Benchmark
+    public List<String> expectQuery() {
+        List<String> log = new ArrayList<>();
+        QueryAssertionEngine.assertQueries(method, method.getAnnotation(ExpectQuery.class), log,
+                new ArrayList<Throwable>());
+        return log;
+    }
+
+    /**
+     * Rendering of the query list, only paid when it is logged.
+     */
+    @Benchmark
+    public List<String> queryList() {
+        List<String> log = new ArrayList<>();
+        QueryListView.of(context).forEachLine(log::add);
+        return log;
+    }
+
+    @Benchmark
+    public List<String> expectDuplicateQuery() {
+        List<String> log = new ArrayList<>();
+        DuplicateQueryAssertionEngine.assertNoExcessiveDuplicates(method, 0, log, new ArrayList<Throwable>());
+        return log;
+    }
+
+    @Benchmark
+    public List<String> expectNoNPlusOne() {
+        List<String> log = new ArrayList<>();
+        NPlusOneAssertionEngine.assertNoNPlusOne(method, method.getAnnotation(ExpectNoNPlusOne.class), log,
+                new ArrayList<Throwable>());
+        return log;
+    }
+
+    @Benchmark
+    public List<String> expectBatch() {
+        List<String> log = new ArrayList<>();
+        BatchAssertionEngine.assertBatching(method, method.getAnnotation(ExpectBatch.class), log,
+                new ArrayList<Throwable>());
+        return log;
+    }
+
+    @Benchmark
+    public List<String> expectRows() {
+        List<String> log = new ArrayList<>();
+        RowsAssertionEngine.assertRows(method, method.getAnnotation(ExpectRows.class), log,
+                new ArrayList<Throwable>());
+        return log;
+    }
+
+    @ExpectQuery(select = 1)
+    @ExpectNoNPlusOne
+    @ExpectBatch
+    @ExpectRows(maxPerQuery = 1)
+    void annotated() {
+    }
+
+    private static void consume(ResultSet rs) throws SQLException {
+        try {
+            while (rs.next()) {
+                rs.getString(2);
+            }
+        } finally {
+            rs.close();
+        }
+    }
+}
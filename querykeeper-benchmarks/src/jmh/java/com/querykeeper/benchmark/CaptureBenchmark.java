@@ -0,0 +1,80 @@
+package com.querykeeper.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.querykeeper.collector.CallSiteCapture;
+import com.querykeeper.collector.QueryLog;
+import com.querykeeper.collector.SqlMetadata;
+
+/**
+ * The per-query work done on top of the JDBC call: resolving the caller,
+ * classifying the SQL and fingerprinting the query for duplicate detection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CaptureBenchmark {
+
+    private static final String SQL = "select m.id, m.name, m.age from member m where m.team_id = ? and m.age > ?";
+
+    @Param({ "ALWAYS", "SAMPLED", "OFF" })
+    public CallSiteCapture.Mode callerMode;
+
+    private QueryLog log;
+
+    @Setup
+    public void setUp() {
+        CallSiteCapture.setMode(callerMode);
+        Map<Integer, Object> parameters = new HashMap<>();
+        parameters.put(1, 42L);
+        parameters.put(2, 30);
+        log = new QueryLog(SQL, parameters, 0, "benchmark", Collections.<Map<Integer, Object>>emptyList());
+    }
+
+    /**
+     * Extra frames below the benchmark method, since a real query is issued
+     * from deep inside a framework stack that the caller search has to walk.
+     */
+    @State(Scope.Thread)
+    public static class Stack {
+
+        @Param({ "0", "100", "300" })
+        public int depth;
+    }
+
+    @Benchmark
+    public String findCaller(Stack stack) {
+        return captureAt(stack.depth);
+    }
+
+    private static String captureAt(int depth) {
+        return depth == 0 ? CallSiteCapture.capture(SQL) : captureAt(depth - 1);
+    }
+
+    @Benchmark
+    public SqlMetadata sqlMetadata() {
+        return SqlMetadata.of(SQL);
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return log.fingerprint();
+    }
+
+    @Benchmark
+    public long fingerprintHash() {
+        return log.fingerprintHash();
+    }
+}
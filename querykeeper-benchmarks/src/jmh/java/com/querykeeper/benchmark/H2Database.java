@@ -0,0 +1,46 @@
+package com.querykeeper.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+/**
+ * In-memory H2 database shared by the benchmarks.
+ */
+final class H2Database {
+
+    static final int ROWS = 1000;
+
+    private H2Database() {
+    }
+
+    /**
+     * Creates a fresh database with a {@code member} table of {@link #ROWS} rows.
+     */
+    static DataSource create(String name) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists member");
+            statement.execute("create table member (id bigint primary key, name varchar(64), age int)");
+            try (PreparedStatement insert = connection.prepareStatement("insert into member values (?, ?, ?)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    insert.setLong(1, i);
+                    insert.setString(2, "member-" + i);
+                    insert.setInt(3, 20 + i % 50);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        return dataSource;
+    }
+}
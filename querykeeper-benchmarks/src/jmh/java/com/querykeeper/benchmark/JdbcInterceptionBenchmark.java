@@ -0,0 +1,130 @@
+package com.querykeeper.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.querykeeper.collector.LoggingDataSource;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.runtime.QueryKeeperRuntimeProperties;
+import com.querykeeper.runtime.RuntimeQueryMonitor;
+import com.querykeeper.runtime.RuntimeQueryScope;
+
+/**
+ * Cost of one JDBC round trip against in-memory H2, with and without the
+ * QueryKeeper wrappers.
+ *
+ * <ul>
+ * <li><b>RAW</b>: the H2 DataSource as is.</li>
+ * <li><b>CAPTURE</b>: wrapped in {@link LoggingDataSource} inside an open test
+ * context, so every statement is logged.</li>
+ * <li><b>RUNTIME</b>: wrapped, outside of any test context, with a runtime
+ * request scope bound: only the per-request counters are updated.</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JdbcInterceptionBenchmark {
+
+    public enum Wrapping {
+        RAW, CAPTURE, RUNTIME
+    }
+
+    @Param({ "RAW", "CAPTURE", "RUNTIME" })
+    public Wrapping wrapping;
+
+    private Connection connection;
+    private Statement statement;
+    private PreparedStatement select;
+    private PreparedStatement update;
+    private QueryKeeperContext context;
+    private RuntimeQueryScope scope;
+    private RuntimeQueryScope previousScope;
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        DataSource dataSource = H2Database.create("interception");
+        if (wrapping != Wrapping.RAW)
+            dataSource = new LoggingDataSource(dataSource);
+
+        if (wrapping == Wrapping.CAPTURE) {
+            QueryKeeperContext.setCaptureUnscoped(true);
+            context = QueryKeeperContext.open();
+        } else if (wrapping == Wrapping.RUNTIME) {
+            QueryKeeperContext.setCaptureUnscoped(false);
+            RuntimeQueryMonitor monitor = new RuntimeQueryMonitor(new QueryKeeperRuntimeProperties(),
+                    Collections.emptyList());
+            scope = monitor.begin("GET", "/benchmark");
+            previousScope = scope.bind();
+        }
+
+        connection = dataSource.getConnection();
+        statement = connection.createStatement();
+        select = connection.prepareStatement("select id, name, age from member where id = ?");
+        update = connection.prepareStatement("update member set age = ? where id = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        select.close();
+        update.close();
+        statement.close();
+        connection.close();
+        if (context != null)
+            context.close();
+        if (scope != null)
+            RuntimeQueryScope.restore(previousScope);
+        QueryKeeperContext.clear();
+        QueryKeeperContext.setCaptureUnscoped(true);
+    }
+
+    @Benchmark
+    public boolean execute() throws SQLException {
+        return statement.execute("select count(*) from member where age > 30");
+    }
+
+    @Benchmark
+    public void executeQuery(Blackhole blackhole) throws SQLException {
+        select.setLong(1, nextId());
+        try (ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(rs.getLong(1));
+                blackhole.consume(rs.getString(2));
+                blackhole.consume(rs.getInt(3));
+            }
+        }
+    }
+
+    @Benchmark
+    public int executeUpdate() throws SQLException {
+        long target = nextId();
+        update.setInt(1, (int) (target % 50));
+        update.setLong(2, target);
+        return update.executeUpdate();
+    }
+
+    private long nextId() {
+        id = (id + 1) % H2Database.ROWS;
+        return id;
+    }
+}
@@ -0,0 +1,57 @@
+package com.querykeeper.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.querykeeper.collector.ParameterBuffer;
+
+/**
+ * Binding {@code parameters} values and taking a per-execution copy:
+ * {@link ParameterBuffer} against the boxed {@code HashMap} that
+ * {@code LoggingPreparedStatement} used before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParameterBindingBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int parameters;
+
+    private final ParameterBuffer buffer = new ParameterBuffer();
+    private final Map<Integer, Object> map = new HashMap<>();
+    private long value;
+
+    @Benchmark
+    public Map<Integer, Object> parameterBuffer() {
+        long base = value++;
+        for (int i = 1; i <= parameters; i++) {
+            if ((i & 1) == 0)
+                buffer.setLong(i, base + i);
+            else
+                buffer.setInt(i, (int) base + i);
+        }
+        return buffer.snapshot();
+    }
+
+    @Benchmark
+    public Map<Integer, Object> hashMap() {
+        long base = value++;
+        for (int i = 1; i <= parameters; i++) {
+            if ((i & 1) == 0)
+                map.put(i, base + i);
+            else
+                map.put(i, (int) base + i);
+        }
+        return new HashMap<>(map);
+    }
+}
@@ -0,0 +1,147 @@
+package com.querykeeper.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.querykeeper.collector.LoggingDataSource;
+import com.querykeeper.collector.QueryKeeperContext;
+
+/**
+ * Runs {@value #TASKS} queries, each on its own task with its own connection,
+ * and checks that all of them were captured by the test context.
+ *
+ * <ul>
+ * <li><b>virtual</b>: one virtual thread per task, relying on the Java 21
+ * context storage of the multi-release JAR to inherit the context. Requires a
+ * Java 21+ runtime.</li>
+ * <li><b>platform</b>: a fixed pool of platform threads wrapped with
+ * {@link QueryKeeperContext#wrap(ExecutorService)}.</li>
+ * </ul>
+ *
+ * <b>RAW</b> runs the same tasks against the H2 DataSource as is, without a
+ * context, as the baseline for the capture overhead. With <b>CAPTURE</b> the
+ * fallback to the only active context is turned off, so a query is captured
+ * only if its thread inherited or was handed the context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VirtualThreadCaptureBenchmark {
+
+    static final int TASKS = 10_000;
+
+    public enum Capture {
+        RAW, CAPTURE
+    }
+
+    @Param({ "virtual", "platform" })
+    public String threads;
+
+    @Param({ "RAW", "CAPTURE" })
+    public Capture capture;
+
+    private DataSource dataSource;
+    private QueryKeeperContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        dataSource = H2Database.create("virtual");
+        if (capture == Capture.CAPTURE) {
+            dataSource = new LoggingDataSource(dataSource);
+            QueryKeeperContext.setSoleActiveFallback(false);
+        }
+        if ("virtual".equals(threads))
+            newVirtualThreadPerTaskExecutor().shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void openContext() {
+        if (capture == Capture.CAPTURE)
+            context = QueryKeeperContext.open();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeContext() {
+        if (context == null)
+            return;
+        long captured = context.getLogCount();
+        context.close();
+        context = null;
+        QueryKeeperContext.clear();
+        if (captured != TASKS)
+            throw new IllegalStateException("Captured " + captured + " of " + TASKS + " queries");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        QueryKeeperContext.setSoleActiveFallback(true);
+    }
+
+    @Benchmark
+    public long captureAll() throws Exception {
+        ExecutorService executor;
+        if ("virtual".equals(threads)) {
+            executor = newVirtualThreadPerTaskExecutor();
+        } else {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            if (capture == Capture.CAPTURE)
+                executor = QueryKeeperContext.wrap(executor);
+        }
+        try {
+            List<Future<Long>> results = new ArrayList<>(TASKS);
+            for (int i = 0; i < TASKS; i++) {
+                long id = i % H2Database.ROWS;
+                results.add(executor.submit(() -> query(id)));
+            }
+            long sum = 0;
+            for (Future<Long> result : results)
+                sum += result.get();
+            return sum;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private long query(long id) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement select = connection.prepareStatement("select age from member where id = ?")) {
+            select.setLong(1, id);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, looked up
+     * reflectively because this module compiles against Java 8.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require a Java 21+ runtime", e);
+        }
+    }
+}
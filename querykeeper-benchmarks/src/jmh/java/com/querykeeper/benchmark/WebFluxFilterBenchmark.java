@@ -0,0 +1,113 @@
+package com.querykeeper.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import com.querykeeper.collector.LoggingDataSource;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.runtime.QueryBudgetWebFilter;
+import com.querykeeper.runtime.QueryKeeperRuntimeProperties;
+import com.querykeeper.runtime.RuntimeQueryMonitor;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cost of one WebFlux request whose handler runs a small Reactor pipeline
+ * ending in JDBC queries against in-memory H2, with and without
+ * {@link QueryBudgetWebFilter}.
+ *
+ * <ul>
+ * <li><b>OFF</b>: no filter, so no Reactor hooks are installed.</li>
+ * <li><b>UNSAMPLED</b>: the filter is installed but the request is not
+ * sampled: only the JVM-wide schedule and operator hooks run.</li>
+ * <li><b>SAMPLED</b>: the request is measured against its budget.</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WebFluxFilterBenchmark {
+
+    public enum Filter {
+        OFF, UNSAMPLED, SAMPLED
+    }
+
+    @Param({ "OFF", "UNSAMPLED", "SAMPLED" })
+    public Filter filter;
+
+    private QueryBudgetWebFilter webFilter;
+    private Connection connection;
+    private PreparedStatement select;
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        QueryKeeperContext.setCaptureUnscoped(false);
+        connection = new LoggingDataSource(H2Database.create("webflux")).getConnection();
+        select = connection.prepareStatement("select age from member where id = ?");
+
+        if (filter != Filter.OFF) {
+            QueryKeeperRuntimeProperties properties = new QueryKeeperRuntimeProperties();
+            properties.setEnabled(true);
+            properties.setSampleRate(filter == Filter.SAMPLED ? 1.0 : 0.0);
+            webFilter = new QueryBudgetWebFilter(new RuntimeQueryMonitor(properties, Collections.emptyList()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        select.close();
+        connection.close();
+        if (webFilter != null)
+            webFilter.destroy();
+        QueryKeeperContext.setCaptureUnscoped(true);
+    }
+
+    @Benchmark
+    public Void request() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/members"));
+        WebFilterChain chain = current -> handle();
+        Mono<Void> response = webFilter != null ? webFilter.filter(exchange, chain) : chain.filter(exchange);
+        return response.block();
+    }
+
+    private Mono<Void> handle() {
+        return Flux.range(0, 8)
+                .map(i -> nextId())
+                .filter(target -> target % 2 == 0)
+                .concatMap(target -> Mono.fromCallable(() -> selectAge(target)))
+                .reduce(0, Integer::sum)
+                .then();
+    }
+
+    private int selectAge(long target) throws SQLException {
+        select.setLong(1, target);
+        try (ResultSet rs = select.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private long nextId() {
+        id = (id + 1) % H2Database.ROWS;
+        return id;
+    }
+}
@@ -23,8 +23,19 @@ import com.querykeeper.junit.QueryKeeperExtension;
  * <ul>
  * <li>{@code @ExpectQuery} — Asserts expected SQL query counts</li>
  * <li>{@code @ExpectTime} — Fails if execution time exceeds threshold</li>
+ * <li>{@code @ExpectLatency} — Repeats the test with warmup and checks a latency percentile</li>
+ * <li>{@code @ExpectDbTime} / {@code @ExpectDbTimeRatio} — Fails if too much time is spent in the database</li>
+ * <li>{@code @ExpectAllocation} — Fails if the test thread allocates more memory than allowed</li>
+ * <li>{@code @ExpectConnections} — Fails on too many concurrent, long-held or unclosed connections</li>
+ * <li>{@code @ExpectTransactions} — Fails on too many or too long transactions</li>
  * <li>{@code @ExpectNoDb} — Fails if any DB access occurs</li>
  * <li>{@code @ExpectNoTx} — Fails if a transaction is active</li>
+ * <li>{@code @ExpectBatch} — Fails if repeated writes are not JDBC-batched</li>
+ * <li>{@code @ExpectRows} — Fails if queries fetch too many rows</li>
+ * <li>{@code @ExpectQueryLatency} — Fails if a single SQL exceeds its latency percentiles</li>
+ * <li>{@code @ExpectNoFullScan} / {@code @ExpectIndexUsage} — Explains the SELECTs and fails on full table scans or unused indexes</li>
+ * <li>{@code @ExpectBaseline} — Records the query profile once and fails on regressions against it</li>
+ * <li>{@code @ExpectNoNPlusOne} — Fails if one caller repeats the same SELECT with different parameters</li>
  * </ul>
  *
  * <p>
@@ -0,0 +1,42 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails the test if the test thread allocates more memory than allowed.
+ *
+ * Allocations are read from the thread allocation counter of the JVM
+ * ({@code com.sun.management.ThreadMXBean}) before and after the test method.
+ * What the JDBC wrappers allocate on their own behalf is reported as
+ * QueryKeeper overhead and not counted against the budget: the wrapper
+ * objects, copies of bound parameters, batch rows, query logs and call sites,
+ * connection and transaction tracking, and the per-row result set
+ * bookkeeping. Reading column values is not instrumented with allocations.
+ * Everything else on the test thread counts, including what the JDBC driver
+ * allocates; allocations of other threads are not seen.
+ *
+ * The report lists, per SQL, the bytes allocated while its rows were processed
+ * (entity hydration): from one {@code ResultSet.next()} to the following one,
+ * less the overhead and the hydration of result sets read in between, so the
+ * rows of a nested query count only for that query. If no threshold is defined
+ * (i.e. value = 0), only the measurement is logged.
+ *
+ * <ul>
+ * <li><b>value</b>: Maximum allowed allocation in bytes</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectAllocation(10 * 1024 * 1024)} → Fails if the
+ * test allocates more than 10MB
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectAllocation {
+    long value() default 0;
+}
@@ -0,0 +1,49 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Compares the query profile of the test with a recorded baseline instead of
+ * hard-coded numbers.
+ *
+ * The first run records the profile (statements per type and per SQL shape,
+ * duplicates, rows fetched and DB time) to a baseline file of the test class
+ * under {@code src/test/resources/querykeeper-baselines}. Later runs fail on
+ * regressions beyond the tolerances. Can be placed on the test class to cover
+ * every test method.
+ *
+ * <ul>
+ * <li><b>queryTolerance</b>: Extra statements allowed per type and per SQL
+ * shape (default 0)</li>
+ * <li><b>duplicateTolerance</b>: Extra duplicate executions allowed (default
+ * 0)</li>
+ * <li><b>rowTolerance</b>: Allowed relative growth of rows fetched (default
+ * 0.1 = +10%)</li>
+ * <li><b>dbTimeTolerance</b>: Allowed relative growth of DB time (-1 = not
+ * checked)</li>
+ * <li><b>allowNewShapes</b>: Whether SQL shapes missing from the baseline
+ * are tolerated (default false)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectBaseline(queryTolerance = 1, dbTimeTolerance = 0.5)}
+ * </p>
+ */
+@Documented
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectBaseline {
+    int queryTolerance() default 0;
+
+    int duplicateTolerance() default 0;
+
+    double rowTolerance() default 0.1;
+
+    double dbTimeTolerance() default -1;
+
+    boolean allowNewShapes() default false;
+}
@@ -0,0 +1,36 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails the test if repeated INSERT, UPDATE or DELETE statements are not sent
+ * to the database as JDBC batches.
+ *
+ * Useful for verifying that Hibernate batching ({@code hibernate.jdbc.batch_size})
+ * is actually in effect, instead of writes going out one row at a time.
+ *
+ * <ul>
+ * <li><b>minSize</b>: Expected batch size. A statement executed N times may use
+ * at most {@code ceil(N / minSize)} round trips. Statements executed fewer
+ * than {@code minSize} times are not checked.</li>
+ * <li><b>maxRoundTrips</b>: Maximum number of write round trips for the whole
+ * test (-1 = unlimited)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectBatch(minSize = 10)} or
+ * {@code @ExpectBatch(maxRoundTrips = 2)}
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectBatch {
+    int minSize() default 2;
+
+    int maxRoundTrips() default -1;
+}
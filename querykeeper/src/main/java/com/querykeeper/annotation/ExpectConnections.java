@@ -0,0 +1,40 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Checks how the test uses connections from a {@code LoggingDataSource}.
+ *
+ * Reports how many connections were acquired, the time spent waiting for the
+ * pool, how long each connection was held (until {@code close()}) and the
+ * connections still open when the test method returns. Connections opened
+ * before the test method, such as the one of a Spring test transaction, are
+ * not counted.
+ *
+ * <ul>
+ * <li><b>max</b>: Maximum connections held at the same time (-1 =
+ * unlimited)</li>
+ * <li><b>maxHoldMs</b>: Maximum time a single connection may be held in
+ * milliseconds (-1 = unlimited)</li>
+ * <li><b>allowUnclosed</b>: Whether connections left open at the end of the
+ * test are tolerated (default false)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectConnections(max = 1, maxHoldMs = 200)}
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectConnections {
+    int max() default -1;
+
+    long maxHoldMs() default -1;
+
+    boolean allowUnclosed() default false;
+}
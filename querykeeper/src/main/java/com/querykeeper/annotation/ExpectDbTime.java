@@ -0,0 +1,32 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails the test if it spends more time in the database than allowed.
+ *
+ * DB time is the sum of JDBC execute calls, result set iteration
+ * ({@code ResultSet.next()}) and connection acquisition. The breakdown is
+ * reported next to the wall time of the test method, so a slow test can be
+ * attributed to the database or to in-JVM work. If no threshold is defined
+ * (i.e. value = 0), only the breakdown is logged.
+ *
+ * <ul>
+ * <li><b>value</b>: Maximum allowed DB time in milliseconds</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectDbTime(100)} → Fails if more than 100ms are
+ * spent in the database
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectDbTime {
+    long value() default 0;
+}
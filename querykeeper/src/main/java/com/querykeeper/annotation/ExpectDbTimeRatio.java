@@ -0,0 +1,29 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails the test if DB time makes up too large a share of its wall time.
+ *
+ * DB time is measured as for {@link ExpectDbTime}. Queries issued from other
+ * threads count as well, so the ratio can exceed 1 when they run in parallel.
+ *
+ * <ul>
+ * <li><b>value</b>: Maximum DB time / wall time ratio, between 0 and 1</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectDbTimeRatio(0.5)} → Fails if more than half of
+ * the test time is spent in the database
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectDbTimeRatio {
+    double value();
+}
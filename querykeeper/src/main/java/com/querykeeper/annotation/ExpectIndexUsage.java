@@ -0,0 +1,28 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Checks the indexes used by the SELECTs of the test, based on the same
+ * EXPLAIN plans as {@link ExpectNoFullScan}.
+ *
+ * <ul>
+ * <li><b>value</b>: Indexes that at least one SELECT must use, case
+ * insensitive (empty = every SELECT must read its tables through an
+ * index)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectIndexUsage("idx_orders_member_id")}
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectIndexUsage {
+    String[] value() default {};
+}
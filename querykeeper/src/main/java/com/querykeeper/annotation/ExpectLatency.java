@@ -0,0 +1,57 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.jupiter.api.TestTemplate;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import com.querykeeper.junit.LatencyInvocationContextProvider;
+
+/**
+ * Measures the test method over several repetitions and checks a percentile of
+ * the distribution instead of a single run.
+ *
+ * The annotation replaces {@code @Test}: the method becomes a test template
+ * that runs {@code warmup} unmeasured repetitions, then {@code iterations}
+ * repetitions timed with {@code System.nanoTime()}. Each repetition is a
+ * separate JUnit invocation with a new test instance, its own
+ * {@code @BeforeEach}/{@code @AfterEach} calls and, under Spring, its own test
+ * transaction. Repetitions run one after another on the same thread, also when
+ * parallel execution is enabled. The other assertions only run after the last
+ * iteration and see the queries of that run.
+ *
+ * <ul>
+ * <li><b>value</b>: Maximum allowed latency at the given percentile in
+ * milliseconds (0 = report only)</li>
+ * <li><b>warmup</b>: Unmeasured invocations before measuring (default 5)</li>
+ * <li><b>iterations</b>: Measured invocations, including the last one
+ * (default 10)</li>
+ * <li><b>percentile</b>: Percentile compared with {@code value} (default 50,
+ * the median)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectLatency(value = 50, warmup = 10, iterations = 30, percentile = 95)}
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@TestTemplate
+@ExtendWith(LatencyInvocationContextProvider.class)
+@Execution(ExecutionMode.SAME_THREAD)
+public @interface ExpectLatency {
+    double value() default 0;
+
+    int warmup() default 5;
+
+    int iterations() default 10;
+
+    double percentile() default 50;
+}
@@ -0,0 +1,30 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails if a SELECT of the test reads a table with a full table scan.
+ *
+ * After the test every distinct SELECT is explained on the test database (H2,
+ * PostgreSQL or MySQL) with the parameters of its first execution. Plans are
+ * cached per normalized SQL for the rest of the run.
+ *
+ * <ul>
+ * <li><b>tables</b>: Tables that must not be scanned (empty = all
+ * tables)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectNoFullScan(tables = {"orders", "members"})}
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectNoFullScan {
+    String[] tables() default {};
+}
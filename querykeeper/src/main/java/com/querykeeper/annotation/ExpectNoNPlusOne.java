@@ -0,0 +1,31 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails the test if the same SELECT is issued repeatedly from the same caller
+ * with varying parameters, the typical shape of an N+1 problem.
+ *
+ * Unlike {@link ExpectDuplicateQuery}, parameter values are ignored: queries
+ * are grouped by call site and SQL with literals masked, so ids inlined into
+ * the SQL count as varying parameters too.
+ *
+ * <ul>
+ * <li><b>threshold</b>: Maximum number of times one SELECT may be repeated
+ * from one caller (default: 2)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectNoNPlusOne} or {@code @ExpectNoNPlusOne(threshold = 5)}
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectNoNPlusOne {
+    int threshold() default 2;
+}
@@ -0,0 +1,41 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails the test if an individual SQL statement is slower than allowed.
+ *
+ * Latencies are recorded per normalized SQL shape (SQL strings that differ
+ * only in literals share one), so a single slow statement is reported even
+ * when the whole method stays within its {@code @ExpectTime} budget. Beyond
+ * 256 shapes per test, further shapes are checked together. Percentiles are
+ * approximate (within 12.5%).
+ *
+ * <ul>
+ * <li><b>p50</b>: Maximum median latency per SQL in milliseconds (-1 =
+ * unchecked)</li>
+ * <li><b>p99</b>: Maximum 99th percentile latency per SQL in milliseconds (-1
+ * = unchecked)</li>
+ * <li><b>max</b>: Maximum latency of any single execution in milliseconds (-1
+ * = unchecked)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectQueryLatency(p99 = 5, max = 20)} or
+ * {@code @ExpectQueryLatency(p50 = 0.5)}
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectQueryLatency {
+    double p50() default -1;
+
+    double p99() default -1;
+
+    double max() default -1;
+}
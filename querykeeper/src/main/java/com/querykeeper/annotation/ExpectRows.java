@@ -0,0 +1,35 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails the test if queries fetch more rows than allowed.
+ *
+ * Rows are counted as they are consumed through {@code ResultSet.next()}, so
+ * this catches over-fetching and missing pagination that query counts alone
+ * cannot see.
+ *
+ * <ul>
+ * <li><b>maxPerQuery</b>: Maximum rows a single query may fetch (-1 =
+ * unlimited)</li>
+ * <li><b>maxTotal</b>: Maximum rows fetched by all queries together (-1 =
+ * unlimited)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectRows(maxPerQuery = 100)} or
+ * {@code @ExpectRows(maxTotal = 1000)}
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectRows {
+    long maxPerQuery() default -1;
+
+    long maxTotal() default -1;
+}
@@ -0,0 +1,34 @@
+package com.querykeeper.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Checks the transactions in which the test's queries ran.
+ *
+ * A transaction lasts from {@code setAutoCommit(false)} (or its first
+ * statement) until {@code commit()}, {@code rollback()} or {@code close()} on
+ * a connection of a {@code LoggingDataSource}. Each execute call made in
+ * auto-commit mode counts as a transaction of its own; a batch counts once.
+ *
+ * <ul>
+ * <li><b>max</b>: Maximum number of transactions (-1 = unlimited)</li>
+ * <li><b>maxDurationMs</b>: Maximum duration of a single transaction in
+ * milliseconds (-1 = unlimited)</li>
+ * </ul>
+ *
+ * <p>
+ * <b>Usage:</b> {@code @ExpectTransactions(max = 1, maxDurationMs = 100)}
+ * </p>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectTransactions {
+    int max() default -1;
+
+    long maxDurationMs() default -1;
+}
@@ -3,8 +3,10 @@ package com.querykeeper.autoconfig;
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
 
 import com.querykeeper.collector.DetachedAccessExceptionCatcher;
 import com.querykeeper.collector.LoggingDataSource;
@@ -18,13 +20,19 @@ public class QueryKeeperAutoConfiguration {
             @Override
             public Object postProcessAfterInitialization(Object bean, String beanName) {
                 if (bean instanceof DataSource && !(bean instanceof LoggingDataSource)) {
-                    return new LoggingDataSource((DataSource) bean);
+                    return new LoggingDataSource((DataSource) bean, beanName);
                 }
                 return bean;
             }
         };
     }
 
+    @Bean
+    @ConditionalOnMissingBean(TaskDecorator.class)
+    public TaskDecorator queryKeeperTaskDecorator() {
+        return new QueryKeeperTaskDecorator();
+    }
+
     @Bean
     public DetachedAccessExceptionCatcher detachedAccessExceptionCatcher() {
         return new DetachedAccessExceptionCatcher();
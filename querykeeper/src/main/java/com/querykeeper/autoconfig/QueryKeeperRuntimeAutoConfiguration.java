@@ -0,0 +1,71 @@
+package com.querykeeper.autoconfig;
+
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.runtime.MicrometerQueryListener;
+import com.querykeeper.runtime.QueryBudgetFilter;
+import com.querykeeper.runtime.QueryBudgetWebFilter;
+import com.querykeeper.runtime.QueryKeeperRuntimeProperties;
+import com.querykeeper.runtime.RuntimeQueryListener;
+import com.querykeeper.runtime.RuntimeQueryMonitor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Production runtime mode, enabled with {@code querykeeper.runtime.enabled=true}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "querykeeper.runtime", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(QueryKeeperRuntimeProperties.class)
+public class QueryKeeperRuntimeAutoConfiguration {
+
+    @Bean
+    public RuntimeQueryMonitor runtimeQueryMonitor(QueryKeeperRuntimeProperties properties,
+            ObjectProvider<RuntimeQueryListener> listeners) {
+        QueryKeeperContext.setCaptureUnscoped(properties.isCaptureQueries());
+        return new RuntimeQueryMonitor(properties, listeners.orderedStream().collect(Collectors.toList()));
+    }
+
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class ServletConfiguration {
+
+        @Bean
+        public QueryBudgetFilter queryBudgetFilter(RuntimeQueryMonitor monitor) {
+            return new QueryBudgetFilter(monitor);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class ReactiveConfiguration {
+
+        @Bean
+        public QueryBudgetWebFilter queryBudgetWebFilter(RuntimeQueryMonitor monitor) {
+            return new QueryBudgetWebFilter(monitor);
+        }
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class MetricsConfiguration {
+
+        @Bean
+        public RuntimeQueryListener micrometerQueryListener(ObjectProvider<MeterRegistry> registry) {
+            MeterRegistry meterRegistry = registry.getIfAvailable();
+            if (meterRegistry == null)
+                return new RuntimeQueryListener() {
+                };
+            return new MicrometerQueryListener(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.querykeeper.autoconfig;
+
+import org.springframework.core.task.TaskDecorator;
+
+import com.querykeeper.collector.QueryKeeperContext;
+
+/**
+ * Carries the submitting thread's QueryKeeper context into Spring-managed
+ * executors, so queries issued from {@code @Async} methods are recorded.
+ */
+public class QueryKeeperTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return QueryKeeperContext.wrap(runnable);
+    }
+}
@@ -0,0 +1,68 @@
+package com.querykeeper.collector;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the number of bytes allocated by the current thread from
+ * {@code com.sun.management.ThreadMXBean}.
+ *
+ * The HotSpot extension is looked up reflectively so that this module still
+ * compiles and runs on JVMs without it; {@link #isSupported()} then returns
+ * {@code false} and every reading is -1.
+ */
+public final class AllocationMeter {
+
+    private static final Object BEAN;
+    private static final MethodHandle ALLOCATED_BYTES;
+
+    static {
+        Object bean = null;
+        MethodHandle allocatedBytes = null;
+        try {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            Class<?> extension = Class.forName("com.sun.management.ThreadMXBean");
+            if (extension.isInstance(threads)) {
+                boolean supported = (Boolean) extension.getMethod("isThreadAllocatedMemorySupported").invoke(threads);
+                if (supported) {
+                    extension.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(threads, true);
+                    allocatedBytes = MethodHandles.publicLookup()
+                            .findVirtual(extension, "getThreadAllocatedBytes",
+                                    MethodType.methodType(long.class, long.class))
+                            .asType(MethodType.methodType(long.class, Object.class, long.class));
+                    bean = threads;
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            bean = null;
+        }
+        BEAN = bean;
+        ALLOCATED_BYTES = bean != null ? allocatedBytes : null;
+    }
+
+    private AllocationMeter() {
+    }
+
+    public static boolean isSupported() {
+        return BEAN != null;
+    }
+
+    /**
+     * Bytes allocated by the calling thread since it started, or -1 if the JVM
+     * does not provide the counter.
+     */
+    public static long currentThreadAllocatedBytes() {
+        if (BEAN == null)
+            return -1;
+        try {
+            return (long) ALLOCATED_BYTES.invokeExact(BEAN, Thread.currentThread().getId());
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
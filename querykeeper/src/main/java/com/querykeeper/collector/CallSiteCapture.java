@@ -0,0 +1,231 @@
+package com.querykeeper.collector;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Resolves the application frame ({@code Class#method:line}) that issued a
+ * query.
+ *
+ * <ul>
+ * <li><b>ALWAYS</b> (default): walks the stack on every execution.</li>
+ * <li><b>SAMPLED</b>: walks the stack for one in {@code sampleRate} executions
+ * of the same SQL and reuses the last resolved caller in between. Once two
+ * walks resolve different callers for one SQL, that SQL is walked on every
+ * execution, so a statement shared by several call sites is not reported
+ * under whichever one was sampled last. Executions before the second call
+ * site is first sampled are still reported under the first.</li>
+ * <li><b>OFF</b>: never walks the stack, callers are reported as
+ * {@code unknown}.</li>
+ * </ul>
+ *
+ * On Java 9+ the stack is walked lazily through {@code StackWalker} and the walk
+ * stops at the first application frame. On Java 8 it falls back to a single
+ * {@link Throwable#getStackTrace()} snapshot.
+ *
+ * The initial settings are read from the {@code querykeeper.caller.mode} and
+ * {@code querykeeper.caller.sample-rate} system properties.
+ */
+public final class CallSiteCapture {
+
+    public enum Mode {
+        OFF, SAMPLED, ALWAYS
+    }
+
+    static final String UNKNOWN = "unknown";
+
+    private static final int MAX_CALL_SITES = 4096;
+
+    private static final ConcurrentHashMap<String, CallSite> CALL_SITES = new ConcurrentHashMap<>();
+
+    private static volatile Mode mode = parseMode(System.getProperty("querykeeper.caller.mode"));
+    private static volatile int sampleRate = Math.max(1, Integer.getInteger("querykeeper.caller.sample-rate", 16));
+    private static volatile CallerFrameFilter filter = CallerFrameFilter.fromSystemProperties();
+
+    private CallSiteCapture() {
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static void setMode(Mode newMode) {
+        mode = newMode;
+        CALL_SITES.clear();
+    }
+
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+
+    public static void setSampleRate(int rate) {
+        if (rate < 1)
+            throw new IllegalArgumentException("sampleRate must be >= 1: " + rate);
+        sampleRate = rate;
+    }
+
+    public static CallerFrameFilter getFilter() {
+        return filter;
+    }
+
+    public static void setFilter(CallerFrameFilter newFilter) {
+        filter = newFilter;
+        CALL_SITES.clear();
+    }
+
+    /**
+     * Returns the caller of the statement identified by {@code sql} according to
+     * the current mode.
+     */
+    public static String capture(String sql) {
+        Mode current = mode;
+        if (current == Mode.OFF)
+            return UNKNOWN;
+        if (current == Mode.ALWAYS || sql == null)
+            return resolve();
+
+        CallSite site = CALL_SITES.get(sql);
+        if (site == null) {
+            if (CALL_SITES.size() >= MAX_CALL_SITES)
+                CALL_SITES.clear();
+            CallSite created = new CallSite();
+            site = CALL_SITES.putIfAbsent(sql, created);
+            if (site == null)
+                site = created;
+        }
+
+        if (site.shared)
+            return resolve();
+        String cached = site.caller;
+        if (cached == null || site.hits.getAndIncrement() % sampleRate == 0) {
+            String resolved = resolve();
+            if (cached != null && !cached.equals(resolved))
+                site.shared = true;
+            site.caller = resolved;
+            return resolved;
+        }
+        return cached;
+    }
+
+    /**
+     * Walks the current stack and returns the first application frame.
+     */
+    public static String resolve() {
+        CallerFrameFilter current = filter;
+        if (StackWalkerSupport.AVAILABLE)
+            return StackWalkerSupport.firstApplicationFrame(current);
+
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            if (current.isApplicationFrame(element.getClassName()))
+                return format(element.getClassName(), element.getMethodName(), element.getLineNumber());
+        }
+        return UNKNOWN;
+    }
+
+    static String format(String className, String methodName, int lineNumber) {
+        return className + "#" + methodName + ":" + lineNumber;
+    }
+
+    private static Mode parseMode(String value) {
+        if (value == null || value.trim().isEmpty())
+            return Mode.ALWAYS;
+        return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private static final class CallSite {
+        final AtomicInteger hits = new AtomicInteger();
+        volatile String caller;
+        /** Set once sampling resolved more than one caller for the SQL. */
+        volatile boolean shared;
+    }
+
+    /**
+     * Reflective bridge to {@code java.lang.StackWalker}, which is not part of
+     * the Java 8 API this module compiles against.
+     */
+    private static final class StackWalkerSupport {
+
+        static final boolean AVAILABLE;
+
+        private static final Object WALKER;
+        private static final MethodHandle WALK;
+        private static final MethodHandle CLASS_NAME;
+        private static final MethodHandle METHOD_NAME;
+        private static final MethodHandle LINE_NUMBER;
+
+        static {
+            Object walker = null;
+            MethodHandle walk = null;
+            MethodHandle className = null;
+            MethodHandle methodName = null;
+            MethodHandle lineNumber = null;
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+                Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+
+                walker = walkerClass.getMethod("getInstance").invoke(null);
+                walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+                        .asType(MethodType.methodType(Object.class, Object.class, Function.class));
+                className = lookup.findVirtual(frameClass, "getClassName", MethodType.methodType(String.class))
+                        .asType(MethodType.methodType(String.class, Object.class));
+                methodName = lookup.findVirtual(frameClass, "getMethodName", MethodType.methodType(String.class))
+                        .asType(MethodType.methodType(String.class, Object.class));
+                lineNumber = lookup.findVirtual(frameClass, "getLineNumber", MethodType.methodType(int.class))
+                        .asType(MethodType.methodType(int.class, Object.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                walker = null;
+            }
+            AVAILABLE = walker != null;
+            WALKER = walker;
+            WALK = walk;
+            CLASS_NAME = className;
+            METHOD_NAME = methodName;
+            LINE_NUMBER = lineNumber;
+        }
+
+        static String firstApplicationFrame(CallerFrameFilter filter) {
+            Function<Stream<Object>, String> search = frames -> frames
+                    .filter(frame -> filter.isApplicationFrame(className(frame)))
+                    .findFirst()
+                    .map(StackWalkerSupport::format)
+                    .orElse(UNKNOWN);
+            try {
+                return (String) (Object) WALK.invokeExact(WALKER, search);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        private static String className(Object frame) {
+            try {
+                return (String) CLASS_NAME.invokeExact(frame);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        private static String format(Object frame) {
+            try {
+                return CallSiteCapture.format(
+                        (String) CLASS_NAME.invokeExact(frame),
+                        (String) METHOD_NAME.invokeExact(frame),
+                        (int) LINE_NUMBER.invokeExact(frame));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which stack frames belong to application code when resolving the
+ * caller of a query.
+ *
+ * A frame is skipped if its class name starts with one of the excluded
+ * prefixes or contains one of the excluded fragments. Decisions are cached per
+ * class name, so repeated walks through the same framework stack only pay for
+ * a map lookup per frame.
+ */
+public final class CallerFrameFilter {
+
+    public static final List<String> DEFAULT_EXCLUDED_PREFIXES = Collections.unmodifiableList(Arrays.asList(
+            "java.",
+            "sun.",
+            "jdk.",
+            "org.hibernate",
+            "org.springframework",
+            "com.querykeeper.collector."));
+
+    public static final List<String> DEFAULT_EXCLUDED_FRAGMENTS = Collections.unmodifiableList(Arrays.asList(
+            "Logging",
+            "AbstractDelegating",
+            "Reflect",
+            "Proxy"));
+
+    private static final int MAX_CACHED_DECISIONS = 8192;
+
+    private final String[] excludedPrefixes;
+    private final String[] excludedFragments;
+    private final ConcurrentHashMap<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+    public CallerFrameFilter(Collection<String> excludedPrefixes, Collection<String> excludedFragments) {
+        this.excludedPrefixes = excludedPrefixes.toArray(new String[0]);
+        this.excludedFragments = excludedFragments.toArray(new String[0]);
+    }
+
+    public static CallerFrameFilter defaults() {
+        return new CallerFrameFilter(DEFAULT_EXCLUDED_PREFIXES, DEFAULT_EXCLUDED_FRAGMENTS);
+    }
+
+    /**
+     * Builds the default filter extended with the comma separated entries of the
+     * {@code querykeeper.caller.exclude-prefixes} and
+     * {@code querykeeper.caller.exclude-fragments} system properties.
+     */
+    public static CallerFrameFilter fromSystemProperties() {
+        List<String> prefixes = new ArrayList<>(DEFAULT_EXCLUDED_PREFIXES);
+        List<String> fragments = new ArrayList<>(DEFAULT_EXCLUDED_FRAGMENTS);
+        prefixes.addAll(split(System.getProperty("querykeeper.caller.exclude-prefixes")));
+        fragments.addAll(split(System.getProperty("querykeeper.caller.exclude-fragments")));
+        return new CallerFrameFilter(prefixes, fragments);
+    }
+
+    public CallerFrameFilter withExcludedPrefixes(String... prefixes) {
+        List<String> merged = new ArrayList<>(Arrays.asList(excludedPrefixes));
+        merged.addAll(Arrays.asList(prefixes));
+        return new CallerFrameFilter(merged, Arrays.asList(excludedFragments));
+    }
+
+    public CallerFrameFilter withExcludedFragments(String... fragments) {
+        List<String> merged = new ArrayList<>(Arrays.asList(excludedFragments));
+        merged.addAll(Arrays.asList(fragments));
+        return new CallerFrameFilter(Arrays.asList(excludedPrefixes), merged);
+    }
+
+    public boolean isApplicationFrame(String className) {
+        Boolean cached = decisions.get(className);
+        if (cached != null)
+            return cached;
+
+        boolean application = evaluate(className);
+        if (decisions.size() >= MAX_CACHED_DECISIONS)
+            decisions.clear();
+        decisions.put(className, application);
+        return application;
+    }
+
+    private boolean evaluate(String className) {
+        for (String prefix : excludedPrefixes) {
+            if (className.startsWith(prefix))
+                return false;
+        }
+        for (String fragment : excludedFragments) {
+            if (className.contains(fragment))
+                return false;
+        }
+        return true;
+    }
+
+    private static List<String> split(String value) {
+        if (value == null || value.trim().isEmpty())
+            return Collections.emptyList();
+
+        List<String> result = new ArrayList<>();
+        for (String part : value.split(",")) {
+            String trimmed = part.trim();
+            if (!trimmed.isEmpty())
+                result.add(trimmed);
+        }
+        return result;
+    }
+}
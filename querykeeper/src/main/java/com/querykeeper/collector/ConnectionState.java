@@ -0,0 +1,92 @@
+package com.querykeeper.collector;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/**
+ * State of one {@link LoggingConnection} shared with the statements it
+ * creates: the DataSource it came from and the transaction currently open on
+ * it.
+ *
+ * A transaction starts when auto-commit is switched off, or with the first
+ * statement while auto-commit is off, and ends with {@code commit()},
+ * {@code rollback()}, {@code setAutoCommit(true)} or {@code close()}.
+ * Statements run in auto-commit mode belong to no transaction.
+ */
+final class ConnectionState {
+
+    private final String dataSourceName;
+    private final DataSource origin;
+    private final Connection delegate;
+    private Boolean autoCommit;
+    private TransactionTracker.Transaction current;
+
+    /**
+     * @param delegate the underlying connection, used to read the initial
+     *                 auto-commit mode; {@code null} for statements wrapped on
+     *                 their own, which are treated as auto-commit
+     */
+    ConnectionState(String dataSourceName, Connection delegate) {
+        this(dataSourceName, null, delegate);
+    }
+
+    /**
+     * @param origin the DataSource wrapped by the {@link LoggingDataSource} the
+     *               connection was obtained from, or {@code null}
+     */
+    ConnectionState(String dataSourceName, DataSource origin, Connection delegate) {
+        this.dataSourceName = dataSourceName;
+        this.origin = origin;
+        this.delegate = delegate;
+    }
+
+    String getDataSourceName() {
+        return dataSourceName;
+    }
+
+    DataSource getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Returns the transaction the next statement runs in, starting one if
+     * auto-commit is off, or {@code null} in auto-commit mode.
+     */
+    synchronized TransactionTracker.Transaction transactionForStatement() {
+        if (current == null && !isAutoCommit())
+            current = TransactionTracker.begin(dataSourceName);
+        return current;
+    }
+
+    synchronized void autoCommitChanged(boolean enabled) {
+        boolean wasEnabled = autoCommit == null || autoCommit;
+        autoCommit = enabled;
+        if (enabled) {
+            end(TransactionTracker.Outcome.COMMIT);
+        } else if (wasEnabled && current == null && QueryKeeperContext.isCapturing()) {
+            current = TransactionTracker.begin(dataSourceName);
+        }
+    }
+
+    synchronized void end(TransactionTracker.Outcome outcome) {
+        if (current == null)
+            return;
+        current.end(outcome);
+        current = null;
+    }
+
+    private boolean isAutoCommit() {
+        if (autoCommit == null) {
+            if (delegate == null)
+                return true;
+            try {
+                autoCommit = delegate.getAutoCommit();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+        return autoCommit;
+    }
+}
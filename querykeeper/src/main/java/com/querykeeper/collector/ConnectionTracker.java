@@ -0,0 +1,152 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connections checked out of a {@link LoggingDataSource} within one context:
+ * acquisition latency, how long each one was held (until
+ * {@code Connection.close()}), how many were held at the same time and which
+ * are still open.
+ */
+public final class ConnectionTracker {
+
+    private final LatencyHistogram acquisition = new LatencyHistogram();
+    private final LatencyHistogram hold = new LatencyHistogram();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+    private final AtomicLong maxHoldNanos = new AtomicLong();
+    private volatile Lease longestHeld;
+    private final Set<Lease> openLeases = ConcurrentHashMap.newKeySet();
+
+    Lease acquire(String dataSource, long acquisitionNanos) {
+        acquisition.record(acquisitionNanos);
+        int held = open.incrementAndGet();
+        if (held > peak.get())
+            peak.accumulateAndGet(held, Math::max);
+
+        Lease lease = new Lease(this, dataSource, acquisitionNanos, CallSiteCapture.capture(null));
+        openLeases.add(lease);
+        return lease;
+    }
+
+    private void release(Lease lease, long holdNanos) {
+        openLeases.remove(lease);
+        open.decrementAndGet();
+        hold.record(holdNanos);
+        if (holdNanos > maxHoldNanos.get() && maxHoldNanos.accumulateAndGet(holdNanos, Math::max) == holdNanos)
+            longestHeld = lease;
+    }
+
+    public long getAcquired() {
+        return acquisition.getCount();
+    }
+
+    /**
+     * Time spent in {@code DataSource.getConnection()}.
+     */
+    public LatencyHistogram getAcquisitionHistogram() {
+        return acquisition;
+    }
+
+    /**
+     * Time from acquisition to {@code close()} of the connections returned so
+     * far.
+     */
+    public LatencyHistogram getHoldHistogram() {
+        return hold;
+    }
+
+    /**
+     * Most connections held at the same time.
+     */
+    public int getPeakConcurrent() {
+        return peak.get();
+    }
+
+    /**
+     * The connection held the longest among those already closed, or
+     * {@code null}.
+     */
+    public Lease getLongestHeld() {
+        return longestHeld;
+    }
+
+    /**
+     * Connections acquired in this context and not closed yet, oldest first.
+     */
+    public List<Lease> getOpenLeases() {
+        List<Lease> result = new ArrayList<>(openLeases);
+        result.sort(Comparator.comparingLong(lease -> lease.acquiredAt));
+        return result;
+    }
+
+    /**
+     * One checked-out connection.
+     */
+    public static final class Lease {
+        private final ConnectionTracker tracker;
+        private final String dataSource;
+        private final long acquisitionNanos;
+        private final String caller;
+        private final String thread;
+        private final long acquiredAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long holdNanos = -1;
+
+        Lease(ConnectionTracker tracker, String dataSource, long acquisitionNanos, String caller) {
+            this.tracker = tracker;
+            this.dataSource = dataSource;
+            this.acquisitionNanos = acquisitionNanos;
+            this.caller = caller;
+            this.thread = Thread.currentThread().getName();
+        }
+
+        /**
+         * Called on {@code close()}; later calls are ignored.
+         */
+        void release() {
+            if (!released.compareAndSet(false, true))
+                return;
+            holdNanos = System.nanoTime() - acquiredAt;
+            tracker.release(this, holdNanos);
+        }
+
+        public String getDataSource() {
+            return dataSource;
+        }
+
+        public long getAcquisitionNanos() {
+            return acquisitionNanos;
+        }
+
+        /**
+         * Application frame that requested the connection.
+         */
+        public String getCaller() {
+            return caller;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        public boolean isReleased() {
+            return released.get();
+        }
+
+        /**
+         * Hold time, measured up to now for connections that are still open.
+         */
+        public long getHoldNanos() {
+            long held = holdNanos;
+            return held >= 0 ? held : System.nanoTime() - acquiredAt;
+        }
+    }
+}
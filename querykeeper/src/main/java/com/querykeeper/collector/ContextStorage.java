@@ -0,0 +1,40 @@
+package com.querykeeper.collector;
+
+/**
+ * Per-thread storage behind {@link QueryKeeperContext}.
+ *
+ * This is the Java 8 implementation. The multi-release JAR ships a Java 21
+ * variant under {@code META-INF/versions/21} that lets virtual threads inherit
+ * the binding of the thread that started them.
+ */
+final class ContextStorage {
+
+    private static final ThreadLocal<QueryKeeperContext> BOUND = new ThreadLocal<>();
+    private static final ThreadLocal<QueryKeeperContext> FALLBACK = ThreadLocal.withInitial(QueryKeeperContext::newFallback);
+
+    private ContextStorage() {
+    }
+
+    static QueryKeeperContext bound() {
+        return BOUND.get();
+    }
+
+    static void bind(QueryKeeperContext context) {
+        BOUND.set(context);
+    }
+
+    static void unbind() {
+        BOUND.remove();
+    }
+
+    static QueryKeeperContext fallback() {
+        return FALLBACK.get();
+    }
+
+    static void clearFallback() {
+        FALLBACK.remove();
+    }
+
+    static void resetSharedFallback() {
+    }
+}
@@ -0,0 +1,168 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts executions per 64-bit fingerprint hash as queries are logged.
+ *
+ * Only the hash and a counter are kept per distinct fingerprint, plus one
+ * sample execution once it repeats; the textual fingerprint is rendered only
+ * for reported duplicates.
+ */
+public final class DuplicateTracker {
+
+    /**
+     * Independently locked segments, selected by the high bits of the hash so
+     * that threads logging into one context rarely wait for each other.
+     */
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_SHIFT = 64 - Integer.numberOfTrailingZeros(SEGMENTS);
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public DuplicateTracker() {
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment();
+    }
+
+    /**
+     * Records one execution. Internal queries are ignored.
+     */
+    public void record(QueryLog log) {
+        if (!log.getMetadata().isInternal())
+            record(log, log.fingerprintHash());
+    }
+
+    /**
+     * Records one non-internal execution whose {@link QueryLog#fingerprintHash()}
+     * is already known.
+     */
+    void record(QueryLog log, long hash) {
+        segments[(int) (hash >>> SEGMENT_SHIFT)].record(log, hash);
+    }
+
+    /**
+     * Executions beyond the first of each distinct fingerprint.
+     */
+    public int getTotalDuplicates() {
+        int total = 0;
+        for (Segment segment : segments)
+            total += segment.getTotalDuplicates();
+        return total;
+    }
+
+    public int getDistinctCount() {
+        int total = 0;
+        for (Segment segment : segments)
+            total += segment.getSize();
+        return total;
+    }
+
+    /**
+     * Fingerprints executed more than once, in no particular order.
+     */
+    public List<Duplicate> getDuplicates() {
+        List<Duplicate> result = new ArrayList<>();
+        for (Segment segment : segments)
+            segment.collectDuplicates(result);
+        return result;
+    }
+
+    /**
+     * Open-addressing table of hashes and counters, guarded by its own monitor.
+     */
+    private static final class Segment {
+        private static final int INITIAL_CAPACITY = 8;
+
+        private long[] hashes = new long[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private QueryLog[] samples = new QueryLog[INITIAL_CAPACITY];
+        private int size;
+        private int totalDuplicates;
+
+        synchronized void record(QueryLog log, long hash) {
+            int slot = find(hash);
+            if (counts[slot] == 0) {
+                hashes[slot] = hash;
+                counts[slot] = 1;
+                if (++size * 2 > hashes.length)
+                    grow();
+                return;
+            }
+            if (counts[slot] == 1)
+                samples[slot] = log;
+            counts[slot]++;
+            totalDuplicates++;
+        }
+
+        synchronized int getTotalDuplicates() {
+            return totalDuplicates;
+        }
+
+        synchronized int getSize() {
+            return size;
+        }
+
+        synchronized void collectDuplicates(List<Duplicate> result) {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 1)
+                    result.add(new Duplicate(samples[i], counts[i]));
+            }
+        }
+
+        private int find(long hash) {
+            int mask = hashes.length - 1;
+            int slot = (int) hash & mask;
+            while (counts[slot] != 0 && hashes[slot] != hash)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldHashes = hashes;
+            int[] oldCounts = counts;
+            QueryLog[] oldSamples = samples;
+
+            hashes = new long[oldHashes.length * 2];
+            counts = new int[oldHashes.length * 2];
+            samples = new QueryLog[oldHashes.length * 2];
+            for (int i = 0; i < oldHashes.length; i++) {
+                if (oldCounts[i] == 0)
+                    continue;
+                int slot = find(oldHashes[i]);
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+                samples[slot] = oldSamples[i];
+            }
+        }
+    }
+
+    public static final class Duplicate {
+        private final QueryLog sample;
+        private final int count;
+
+        Duplicate(QueryLog sample, int count) {
+            this.sample = sample;
+            this.count = count;
+        }
+
+        /**
+         * Second execution of the duplicated query.
+         */
+        public QueryLog getSample() {
+            return sample;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Renders the textual fingerprint (SQL and parameters).
+         */
+        public String getFingerprint() {
+            return sample.fingerprint();
+        }
+    }
+}
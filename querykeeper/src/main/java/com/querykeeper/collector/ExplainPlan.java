@@ -0,0 +1,115 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed EXPLAIN output of one SELECT: how each table is accessed, plus the
+ * plan text as returned by the database.
+ */
+public final class ExplainPlan {
+
+    public enum Access {
+        /** Every row of the table is read. */
+        FULL_SCAN,
+        /** Rows are located through an index. */
+        INDEX,
+        /** Anything else, such as a constant table or a table function. */
+        OTHER
+    }
+
+    private final String dialect;
+    private final String sql;
+    private final List<String> lines;
+    private final List<Step> steps;
+
+    ExplainPlan(String dialect, String sql, List<String> lines, List<Step> steps) {
+        this.dialect = dialect;
+        this.sql = sql;
+        this.lines = Collections.unmodifiableList(new ArrayList<>(lines));
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+
+    /**
+     * H2, PostgreSQL or MySQL.
+     */
+    public String getDialect() {
+        return dialect;
+    }
+
+    /**
+     * The explained SQL, as captured.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Plan text, one entry per row returned by EXPLAIN.
+     */
+    public List<String> getLines() {
+        return lines;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public List<Step> getFullScans() {
+        List<Step> scans = new ArrayList<>();
+        for (Step step : steps) {
+            if (step.getAccess() == Access.FULL_SCAN)
+                scans.add(step);
+        }
+        return scans;
+    }
+
+    /**
+     * Lower-cased names of the indexes the plan uses.
+     */
+    public List<String> getIndexes() {
+        List<String> indexes = new ArrayList<>();
+        for (Step step : steps) {
+            if (step.getIndex() != null && !indexes.contains(step.getIndex()))
+                indexes.add(step.getIndex());
+        }
+        return indexes;
+    }
+
+    public static final class Step {
+        private final String table;
+        private final Access access;
+        private final String index;
+
+        Step(String table, Access access, String index) {
+            this.table = table;
+            this.access = access;
+            this.index = index;
+        }
+
+        /**
+         * Lower-cased table name without schema, or {@code null} for an index
+         * step that names no table.
+         */
+        public String getTable() {
+            return table;
+        }
+
+        public Access getAccess() {
+            return access;
+        }
+
+        /**
+         * Lower-cased index name, or {@code null} if no index is used.
+         */
+        public String getIndex() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return table + " " + access + (index != null ? " (" + index + ")" : "");
+        }
+    }
+}
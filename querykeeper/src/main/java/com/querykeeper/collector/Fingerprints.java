@@ -0,0 +1,119 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * 64-bit hashing of statements and their bound parameters.
+ *
+ * Integral values hash the same regardless of their boxed type, matching the
+ * {@code String.valueOf} equality the textual fingerprint uses. Text and byte
+ * arrays are hashed over their full contents, since {@link DuplicateTracker}
+ * keeps no values to tell colliding hashes apart.
+ */
+final class Fingerprints {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+    private static final long TRUE_HASH = 0x2545f4914f6cdd1dL;
+    private static final long FALSE_HASH = 0x5851f42d4c957f2dL;
+    private static final long BATCH_ROW = 0x94d049bb133111ebL;
+
+    private Fingerprints() {
+    }
+
+    static long hashSql(String sql) {
+        return hashChars(sql);
+    }
+
+    static long hashChars(CharSequence chars) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < chars.length(); i++) {
+            h ^= chars.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    static long hashBytes(byte[] bytes) {
+        long h = FNV_OFFSET;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    static long hashParameters(long seed, Map<Integer, Object> parameters) {
+        if (parameters instanceof ParameterSnapshot)
+            return ((ParameterSnapshot) parameters).hash(seed);
+
+        long h = seed;
+        for (Map.Entry<Integer, Object> entry : byIndex(parameters)) {
+            h = combine(h, entry.getKey(), hashValue(entry.getValue()));
+        }
+        return h;
+    }
+
+    /**
+     * Entries in ascending parameter index, the order a snapshot hashes its
+     * slots in.
+     */
+    private static Collection<Map.Entry<Integer, Object>> byIndex(Map<Integer, Object> parameters) {
+        if (parameters instanceof SortedMap && ((SortedMap<Integer, Object>) parameters).comparator() == null)
+            return parameters.entrySet();
+        List<Map.Entry<Integer, Object>> entries = new ArrayList<>(parameters.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        return entries;
+    }
+
+    static long batchRow(long h) {
+        return mix(h ^ BATCH_ROW);
+    }
+
+    static long combine(long h, int index, long valueHash) {
+        return mix(h * 31 + index) ^ valueHash;
+    }
+
+    static long hashIntegral(long value) {
+        return mix(value);
+    }
+
+    static long hashFloating(double value) {
+        return mix(Double.doubleToLongBits(value) ^ NULL_HASH);
+    }
+
+    static long hashBoolean(boolean value) {
+        return value ? TRUE_HASH : FALSE_HASH;
+    }
+
+    static long hashValue(Object value) {
+        if (value == null)
+            return NULL_HASH;
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            return hashIntegral(((Number) value).longValue());
+        if (value instanceof Double || value instanceof Float)
+            return hashFloating(((Number) value).doubleValue());
+        if (value instanceof Boolean)
+            return hashBoolean((Boolean) value);
+        if (value instanceof CharSequence)
+            return hashChars((CharSequence) value);
+        if (value instanceof byte[])
+            return hashBytes((byte[]) value);
+        return mix(value.hashCode());
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
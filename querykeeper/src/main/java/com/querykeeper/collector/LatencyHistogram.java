@@ -0,0 +1,101 @@
+package com.querykeeper.collector;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, log-bucketed histogram of durations in nanoseconds.
+ *
+ * Each power of two is split into 8 linear sub-buckets, so recorded values are
+ * reported with at most 12.5% relative error while the whole histogram takes a
+ * few kilobytes regardless of the number of samples. Safe for concurrent
+ * recording.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        totalNanos.addAndGet(value);
+        if (value < minNanos.get())
+            minNanos.accumulateAndGet(value, Math::min);
+        if (value > maxNanos.get())
+            maxNanos.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMinNanos() {
+        return count.get() == 0 ? 0 : minNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the value at the given percentile (0-100), reported as the upper
+     * bound of its bucket and capped at the recorded maximum.
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = count.get();
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank)
+                return Math.min(upperBoundOf(bucket), maxNanos.get());
+        }
+        return maxNanos.get();
+    }
+
+    public double getPercentileMs(double percentile) {
+        return toMs(getPercentileNanos(percentile));
+    }
+
+    public double getMaxMs() {
+        return toMs(getMaxNanos());
+    }
+
+    public static double toMs(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> exponent) & (SUB_BUCKETS - 1);
+        return (exponent + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << exponent;
+        return lower + (1L << exponent) - 1;
+    }
+}
@@ -1,18 +1,168 @@
-package com.querykeeper.collector;
-
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-
-public class LoggingConnection extends AbstractDelegatingConnection {
-
-    public LoggingConnection(Connection delegate) {
-        super(delegate);
-    }
-
-    @Override
-    public PreparedStatement prepareStatement(String sql) throws SQLException {
-        return new LoggingPreparedStatement(super.prepareStatement(sql), sql);
-    }
-
-}
+package com.querykeeper.collector;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+public class LoggingConnection extends AbstractDelegatingConnection {
+
+    private final ConnectionState state;
+    private final ConnectionTracker.Lease lease;
+
+    public LoggingConnection(Connection delegate) {
+        this(delegate, QueryLog.DEFAULT_DATA_SOURCE);
+    }
+
+    public LoggingConnection(Connection delegate, String dataSourceName) {
+        this(delegate, dataSourceName, null);
+    }
+
+    LoggingConnection(Connection delegate, String dataSourceName, ConnectionTracker.Lease lease) {
+        this(delegate, dataSourceName, null, lease);
+    }
+
+    LoggingConnection(Connection delegate, String dataSourceName, DataSource origin, ConnectionTracker.Lease lease) {
+        super(delegate);
+        this.state = new ConnectionState(dataSourceName, origin, delegate);
+        this.lease = lease;
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        super.setAutoCommit(autoCommit);
+        long allocated = QueryRecorder.allocationMark();
+        state.autoCommitChanged(autoCommit);
+        QueryRecorder.attributeOverhead(allocated);
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        try {
+            super.commit();
+        } finally {
+            long allocated = QueryRecorder.allocationMark();
+            state.end(TransactionTracker.Outcome.COMMIT);
+            QueryRecorder.attributeOverhead(allocated);
+        }
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        try {
+            super.rollback();
+        } finally {
+            long allocated = QueryRecorder.allocationMark();
+            state.end(TransactionTracker.Outcome.ROLLBACK);
+            QueryRecorder.attributeOverhead(allocated);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            super.close();
+        } finally {
+            long allocated = QueryRecorder.allocationMark();
+            state.end(TransactionTracker.Outcome.CLOSED);
+            if (lease != null)
+                lease.release();
+            QueryRecorder.attributeOverhead(allocated);
+        }
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        Statement statement = super.createStatement();
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingStatement(statement, state));
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+        Statement statement = super.createStatement(resultSetType, resultSetConcurrency);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingStatement(statement, state));
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+            throws SQLException {
+        Statement statement = super.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingStatement(statement, state));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement statement = super.prepareStatement(sql);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingPreparedStatement(statement, sql, state));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        PreparedStatement statement = super.prepareStatement(sql, resultSetType, resultSetConcurrency);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingPreparedStatement(statement, sql, state));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+            int resultSetHoldability) throws SQLException {
+        PreparedStatement statement = super.prepareStatement(sql, resultSetType, resultSetConcurrency,
+                resultSetHoldability);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingPreparedStatement(statement, sql, state));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        PreparedStatement statement = super.prepareStatement(sql, autoGeneratedKeys);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingPreparedStatement(statement, sql, state));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+        PreparedStatement statement = super.prepareStatement(sql, columnIndexes);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingPreparedStatement(statement, sql, state));
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+        PreparedStatement statement = super.prepareStatement(sql, columnNames);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingPreparedStatement(statement, sql, state));
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql) throws SQLException {
+        CallableStatement statement = super.prepareCall(sql);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingCallableStatement(statement, sql, state));
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        CallableStatement statement = super.prepareCall(sql, resultSetType, resultSetConcurrency);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingCallableStatement(statement, sql, state));
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
+            int resultSetHoldability) throws SQLException {
+        CallableStatement statement = super.prepareCall(sql, resultSetType, resultSetConcurrency,
+                resultSetHoldability);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingCallableStatement(statement, sql, state));
+    }
+
+}
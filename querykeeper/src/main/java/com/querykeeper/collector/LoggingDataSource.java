@@ -9,17 +9,39 @@ import org.springframework.jdbc.datasource.DelegatingDataSource;
 
 public class LoggingDataSource extends DelegatingDataSource {
 
+    private final String name;
+
     public LoggingDataSource(DataSource delegate) {
+        this(delegate, QueryLog.DEFAULT_DATA_SOURCE);
+    }
+
+    public LoggingDataSource(DataSource delegate, String name) {
         super(delegate);
+        this.name = name;
+    }
+
+    /**
+     * Name reported for the queries of this DataSource, usually its bean name.
+     */
+    public String getName() {
+        return name;
     }
 
     @Override
     public Connection getConnection() throws SQLException {
-        return new LoggingConnection(super.getConnection());
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        ConnectionTracker.Lease lease = QueryRecorder.recordConnection(name, start);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingConnection(connection, name, getTargetDataSource(), lease));
     }
 
     @Override
     public Connection getConnection(String username, String password) throws SQLException {
-        return new LoggingConnection(super.getConnection(username, password));
+        long start = System.nanoTime();
+        Connection connection = super.getConnection(username, password);
+        ConnectionTracker.Lease lease = QueryRecorder.recordConnection(name, start);
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingConnection(connection, name, getTargetDataSource(), lease));
     }
 }
@@ -22,15 +22,18 @@ import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatement implements PreparedStatement {
 
     private final String sql;
-    private final Map<Integer, Object> parameters = new HashMap<>();
+    private final ConnectionState connection;
+    private final ParameterBuffer parameters = new ParameterBuffer();
+    private final List<Map<Integer, Object>> batch = new ArrayList<>();
+    private QueryLog lastLog;
 
     @Override
     @Deprecated
@@ -39,94 +42,78 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
     }
 
     public LoggingPreparedStatement(PreparedStatement delegate, String sql) {
-        super(delegate);
-        this.sql = sql;
+        this(delegate, sql, QueryLog.DEFAULT_DATA_SOURCE);
     }
 
-    private void capture(int index, Object value) {
-        parameters.put(index, value);
+    public LoggingPreparedStatement(PreparedStatement delegate, String sql, String dataSourceName) {
+        this(delegate, sql, new ConnectionState(dataSourceName, null));
+    }
+
+    LoggingPreparedStatement(PreparedStatement delegate, String sql, ConnectionState connection) {
+        super(delegate);
+        this.sql = sql;
+        this.connection = connection;
     }
 
     @Override
     public boolean execute() throws SQLException {
-        long start = System.nanoTime();
+        long start = QueryRecorder.start();
         boolean result = delegate.execute();
-        long end = System.nanoTime();
-        long durationMs = TimeUnit.NANOSECONDS.toMillis(end - start);
-        String caller = findCaller();
-        QueryKeeperContext.getCurrent().log(new QueryLog(sql, parameters, durationMs, caller));
+        lastLog = QueryRecorder.record(connection, sql, parameters, start);
         return result;
     }
 
     @Override
     public ResultSet executeQuery() throws SQLException {
-        long start = System.currentTimeMillis();
+        long start = QueryRecorder.start();
         ResultSet rs = delegate.executeQuery();
-        long end = System.currentTimeMillis();
-        String caller = findCaller();
-        QueryKeeperContext.getCurrent().log(new QueryLog(sql, parameters, end - start, caller));
-        return rs;
+        lastLog = QueryRecorder.record(connection, sql, parameters, start);
+        return LoggingResultSet.wrap(rs, lastLog);
     }
 
     @Override
     public int executeUpdate() throws SQLException {
-        long start = System.currentTimeMillis();
+        long start = QueryRecorder.start();
         int result = delegate.executeUpdate();
-        long end = System.currentTimeMillis();
-        String caller = findCaller();
-        QueryKeeperContext.getCurrent().log(new QueryLog(sql, parameters, end - start, caller));
+        lastLog = QueryRecorder.record(connection, sql, parameters, start);
         return result;
     }
 
-    private String findCaller() {
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-
-        for (StackTraceElement element : stackTrace) {
-            String className = element.getClassName();
-
-            if (!className.startsWith("java.") &&
-                    !className.startsWith("sun.") &&
-                    !className.startsWith("jdk.") &&
-                    !className.contains("Logging") &&
-                    !className.contains("AbstractDelegating") &&
-                    !className.contains("Reflect") &&
-                    !className.contains("Proxy") &&
-                    !className.startsWith("org.hibernate") &&
-                    !className.startsWith("org.springframework")) {
-                return className + "#" + element.getMethodName() + ":" + element.getLineNumber();
-            }
-        }
-
-        return "unknown";
+    @Override
+    public void addBatch() throws SQLException {
+        delegate.addBatch();
+        long allocated = QueryRecorder.allocationMark();
+        batch.add(parameters.snapshot());
+        QueryRecorder.attributeOverhead(allocated);
     }
 
     @Override
     public void setObject(int parameterIndex, Object x) throws SQLException {
-        capture(parameterIndex, x);
+        parameters.setObject(parameterIndex, x);
         delegate.setObject(parameterIndex, x);
     }
 
     @Override
     public void setString(int parameterIndex, String x) throws SQLException {
-        capture(parameterIndex, x);
+        parameters.setObject(parameterIndex, x);
         delegate.setString(parameterIndex, x);
     }
 
     @Override
     public void setInt(int parameterIndex, int x) throws SQLException {
-        capture(parameterIndex, x);
+        parameters.setInt(parameterIndex, x);
         delegate.setInt(parameterIndex, x);
     }
 
     @Override
     public void setLong(int parameterIndex, long x) throws SQLException {
-        capture(parameterIndex, x);
+        parameters.setLong(parameterIndex, x);
         delegate.setLong(parameterIndex, x);
     }
 
     @Override
     public void setDouble(int parameterIndex, double x) throws SQLException {
-        capture(parameterIndex, x);
+        parameters.setDouble(parameterIndex, x);
         delegate.setDouble(parameterIndex, x);
     }
 
@@ -137,12 +124,18 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
 
     @Override
     public ResultSet executeQuery(String sql) throws SQLException {
-        return delegate.executeQuery(sql);
+        long start = QueryRecorder.start();
+        ResultSet rs = delegate.executeQuery(sql);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return LoggingResultSet.wrap(rs, lastLog);
     }
 
     @Override
     public int executeUpdate(String sql) throws SQLException {
-        return delegate.executeUpdate(sql);
+        long start = QueryRecorder.start();
+        int result = delegate.executeUpdate(sql);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
     }
 
     @Override
@@ -202,12 +195,15 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
 
     @Override
     public boolean execute(String sql) throws SQLException {
-        return delegate.execute(sql);
+        long start = QueryRecorder.start();
+        boolean result = delegate.execute(sql);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
     }
 
     @Override
     public ResultSet getResultSet() throws SQLException {
-        return delegate.getResultSet();
+        return LoggingResultSet.wrap(delegate.getResultSet(), lastLog);
     }
 
     @Override
@@ -258,11 +254,37 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
     @Override
     public void clearBatch() throws SQLException {
         delegate.clearBatch();
+        batch.clear();
     }
 
     @Override
     public int[] executeBatch() throws SQLException {
-        return delegate.executeBatch();
+        if (batch.isEmpty())
+            return delegate.executeBatch();
+
+        List<Map<Integer, Object>> rows = QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new ArrayList<>(batch));
+        batch.clear();
+
+        long start = QueryRecorder.start();
+        int[] result = delegate.executeBatch();
+        QueryRecorder.recordBatch(connection, sql, rows, start);
+        return result;
+    }
+
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        if (batch.isEmpty())
+            return delegate.executeLargeBatch();
+
+        List<Map<Integer, Object>> rows = QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new ArrayList<>(batch));
+        batch.clear();
+
+        long start = QueryRecorder.start();
+        long[] result = delegate.executeLargeBatch();
+        QueryRecorder.recordBatch(connection, sql, rows, start);
+        return result;
     }
 
     @Override
@@ -282,32 +304,50 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
 
     @Override
     public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
-        return delegate.executeUpdate(sql, autoGeneratedKeys);
+        long start = QueryRecorder.start();
+        int result = delegate.executeUpdate(sql, autoGeneratedKeys);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
     }
 
     @Override
     public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
-        return delegate.executeUpdate(sql, columnIndexes);
+        long start = QueryRecorder.start();
+        int result = delegate.executeUpdate(sql, columnIndexes);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
     }
 
     @Override
     public int executeUpdate(String sql, String[] columnNames) throws SQLException {
-        return delegate.executeUpdate(sql, columnNames);
+        long start = QueryRecorder.start();
+        int result = delegate.executeUpdate(sql, columnNames);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
     }
 
     @Override
     public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
-        return delegate.execute(sql, autoGeneratedKeys);
+        long start = QueryRecorder.start();
+        boolean result = delegate.execute(sql, autoGeneratedKeys);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
     }
 
     @Override
     public boolean execute(String sql, int[] columnIndexes) throws SQLException {
-        return delegate.execute(sql, columnIndexes);
+        long start = QueryRecorder.start();
+        boolean result = delegate.execute(sql, columnIndexes);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
     }
 
     @Override
     public boolean execute(String sql, String[] columnNames) throws SQLException {
-        return delegate.execute(sql, columnNames);
+        long start = QueryRecorder.start();
+        boolean result = delegate.execute(sql, columnNames);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
     }
 
     @Override
@@ -352,31 +392,37 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
 
     @Override
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
+        parameters.setObject(parameterIndex, null);
         delegate.setNull(parameterIndex, sqlType);
     }
 
     @Override
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+        parameters.setBoolean(parameterIndex, x);
         delegate.setBoolean(parameterIndex, x);
     }
 
     @Override
     public void setByte(int parameterIndex, byte x) throws SQLException {
+        parameters.setByte(parameterIndex, x);
         delegate.setByte(parameterIndex, x);
     }
 
     @Override
     public void setShort(int parameterIndex, short x) throws SQLException {
+        parameters.setShort(parameterIndex, x);
         delegate.setShort(parameterIndex, x);
     }
 
     @Override
     public void setFloat(int parameterIndex, float x) throws SQLException {
+        parameters.setFloat(parameterIndex, x);
         delegate.setFloat(parameterIndex, x);
     }
 
     @Override
     public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setBigDecimal(parameterIndex, x);
     }
 
@@ -387,16 +433,19 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
 
     @Override
     public void setDate(int parameterIndex, Date x) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setDate(parameterIndex, x);
     }
 
     @Override
     public void setTime(int parameterIndex, Time x) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setTime(parameterIndex, x);
     }
 
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setTimestamp(parameterIndex, x);
     }
 
@@ -412,16 +461,19 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
 
     @Override
     public void clearParameters() throws SQLException {
+        parameters.clear();
         delegate.clearParameters();
     }
 
     @Override
     public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setObject(parameterIndex, x, targetSqlType);
     }
 
     @Override
     public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
     }
 
@@ -457,21 +509,25 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
 
     @Override
     public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setDate(parameterIndex, x, cal);
     }
 
     @Override
     public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setTime(parameterIndex, x, cal);
     }
 
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setTimestamp(parameterIndex, x, cal);
     }
 
     @Override
     public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+        parameters.setObject(parameterIndex, null);
         delegate.setNull(parameterIndex, sqlType, typeName);
     }
 
@@ -492,6 +548,7 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
 
     @Override
     public void setNString(int parameterIndex, String value) throws SQLException {
+        parameters.setObject(parameterIndex, value);
         delegate.setNString(parameterIndex, value);
     }
 
@@ -527,17 +584,69 @@ public class LoggingPreparedStatement extends AbstractDelegatingPreparedStatemen
 
     @Override
     public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
     }
 
     @Override
     public void setObject(int parameterIndex, Object x, SQLType targetSqlType) throws SQLException {
+        parameters.setObject(parameterIndex, x);
         delegate.setObject(parameterIndex, x, targetSqlType);
     }
 
     @Override
     public long executeLargeUpdate() throws SQLException {
-        return delegate.executeLargeUpdate();
+        long start = QueryRecorder.start();
+        long result = delegate.executeLargeUpdate();
+        lastLog = QueryRecorder.record(connection, sql, parameters, start);
+        return result;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql) throws SQLException {
+        long start = QueryRecorder.start();
+        long result = delegate.executeLargeUpdate(sql);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = QueryRecorder.start();
+        long result = delegate.executeLargeUpdate(sql, autoGeneratedKeys);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long start = QueryRecorder.start();
+        long result = delegate.executeLargeUpdate(sql, columnIndexes);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+        long start = QueryRecorder.start();
+        long result = delegate.executeLargeUpdate(sql, columnNames);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public long getLargeUpdateCount() throws SQLException {
+        return delegate.getLargeUpdateCount();
+    }
+
+    @Override
+    public void setLargeMaxRows(long max) throws SQLException {
+        delegate.setLargeMaxRows(max);
+    }
+
+    @Override
+    public long getLargeMaxRows() throws SQLException {
+        return delegate.getLargeMaxRows();
     }
 
     @Override
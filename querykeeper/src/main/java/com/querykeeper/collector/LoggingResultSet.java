@@ -0,0 +1,225 @@
+package com.querykeeper.collector;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+public class LoggingResultSet extends AbstractDelegatingResultSet {
+
+    private final ResultSetStats stats;
+
+    public LoggingResultSet(ResultSet delegate, ResultSetStats stats) {
+        super(delegate);
+        this.stats = stats;
+    }
+
+    static ResultSet wrap(ResultSet rs, QueryLog log) {
+        if (rs == null || log == null || rs instanceof LoggingResultSet)
+            return rs;
+        QueryKeeperContext context = QueryKeeperContext.getCurrent();
+        QueryAggregates allocations = context.isTrackingAllocations() ? context.getAggregates() : null;
+        return QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(),
+                new LoggingResultSet(rs, log.openResultSetStats(allocations)));
+    }
+
+    @Override
+    public void close() throws SQLException {
+        stats.close();
+        super.close();
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        long start = System.nanoTime();
+        boolean hasRow = delegate.next();
+        stats.addFetch(hasRow, System.nanoTime() - start);
+        if (hasRow && !stats.hasColumnCount()) {
+            long allocated = QueryRecorder.allocationMark();
+            stats.setColumnCount(delegate.getMetaData().getColumnCount());
+            QueryRecorder.attributeOverhead(allocated);
+        }
+        return hasRow;
+    }
+
+    @Override
+    public String getString(int columnIndex) throws SQLException {
+        return track(delegate.getString(columnIndex));
+    }
+
+    @Override
+    public String getString(String columnLabel) throws SQLException {
+        return track(delegate.getString(columnLabel));
+    }
+
+    @Override
+    public String getNString(int columnIndex) throws SQLException {
+        return track(delegate.getNString(columnIndex));
+    }
+
+    @Override
+    public String getNString(String columnLabel) throws SQLException {
+        return track(delegate.getNString(columnLabel));
+    }
+
+    @Override
+    public byte[] getBytes(int columnIndex) throws SQLException {
+        return track(delegate.getBytes(columnIndex));
+    }
+
+    @Override
+    public byte[] getBytes(String columnLabel) throws SQLException {
+        return track(delegate.getBytes(columnLabel));
+    }
+
+    @Override
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        stats.addBytes(1);
+        return delegate.getBoolean(columnIndex);
+    }
+
+    @Override
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        stats.addBytes(1);
+        return delegate.getBoolean(columnLabel);
+    }
+
+    @Override
+    public byte getByte(int columnIndex) throws SQLException {
+        stats.addBytes(1);
+        return delegate.getByte(columnIndex);
+    }
+
+    @Override
+    public byte getByte(String columnLabel) throws SQLException {
+        stats.addBytes(1);
+        return delegate.getByte(columnLabel);
+    }
+
+    @Override
+    public short getShort(int columnIndex) throws SQLException {
+        stats.addBytes(2);
+        return delegate.getShort(columnIndex);
+    }
+
+    @Override
+    public short getShort(String columnLabel) throws SQLException {
+        stats.addBytes(2);
+        return delegate.getShort(columnLabel);
+    }
+
+    @Override
+    public int getInt(int columnIndex) throws SQLException {
+        stats.addBytes(4);
+        return delegate.getInt(columnIndex);
+    }
+
+    @Override
+    public int getInt(String columnLabel) throws SQLException {
+        stats.addBytes(4);
+        return delegate.getInt(columnLabel);
+    }
+
+    @Override
+    public long getLong(int columnIndex) throws SQLException {
+        stats.addBytes(8);
+        return delegate.getLong(columnIndex);
+    }
+
+    @Override
+    public long getLong(String columnLabel) throws SQLException {
+        stats.addBytes(8);
+        return delegate.getLong(columnLabel);
+    }
+
+    @Override
+    public float getFloat(int columnIndex) throws SQLException {
+        stats.addBytes(4);
+        return delegate.getFloat(columnIndex);
+    }
+
+    @Override
+    public float getFloat(String columnLabel) throws SQLException {
+        stats.addBytes(4);
+        return delegate.getFloat(columnLabel);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) throws SQLException {
+        stats.addBytes(8);
+        return delegate.getDouble(columnIndex);
+    }
+
+    @Override
+    public double getDouble(String columnLabel) throws SQLException {
+        stats.addBytes(8);
+        return delegate.getDouble(columnLabel);
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+        return track(delegate.getBigDecimal(columnIndex));
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+        return track(delegate.getBigDecimal(columnLabel));
+    }
+
+    @Override
+    public Date getDate(int columnIndex) throws SQLException {
+        return track(delegate.getDate(columnIndex));
+    }
+
+    @Override
+    public Date getDate(String columnLabel) throws SQLException {
+        return track(delegate.getDate(columnLabel));
+    }
+
+    @Override
+    public Time getTime(int columnIndex) throws SQLException {
+        return track(delegate.getTime(columnIndex));
+    }
+
+    @Override
+    public Time getTime(String columnLabel) throws SQLException {
+        return track(delegate.getTime(columnLabel));
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        return track(delegate.getTimestamp(columnIndex));
+    }
+
+    @Override
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        return track(delegate.getTimestamp(columnLabel));
+    }
+
+    @Override
+    public Object getObject(int columnIndex) throws SQLException {
+        return track(delegate.getObject(columnIndex));
+    }
+
+    @Override
+    public Object getObject(String columnLabel) throws SQLException {
+        return track(delegate.getObject(columnLabel));
+    }
+
+    @Override
+    public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+        return track(delegate.getObject(columnIndex, type));
+    }
+
+    @Override
+    public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+        return track(delegate.getObject(columnLabel, type));
+    }
+
+    private <T> T track(T value) {
+        stats.addBytes(ResultSetStats.estimateBytes(value));
+        return value;
+    }
+}
@@ -0,0 +1,179 @@
+package com.querykeeper.collector;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoggingStatement extends AbstractDelegatingStatement {
+
+    private final List<String> batch = new ArrayList<>();
+    private QueryLog lastLog;
+
+    private final ConnectionState connection;
+
+    public LoggingStatement(Statement delegate) {
+        this(delegate, QueryLog.DEFAULT_DATA_SOURCE);
+    }
+
+    public LoggingStatement(Statement delegate, String dataSourceName) {
+        this(delegate, new ConnectionState(dataSourceName, null));
+    }
+
+    LoggingStatement(Statement delegate, ConnectionState connection) {
+        super(delegate);
+        this.connection = connection;
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        long start = QueryRecorder.start();
+        boolean result = delegate.execute(sql);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = QueryRecorder.start();
+        boolean result = delegate.execute(sql, autoGeneratedKeys);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        long start = QueryRecorder.start();
+        boolean result = delegate.execute(sql, columnIndexes);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        long start = QueryRecorder.start();
+        boolean result = delegate.execute(sql, columnNames);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        long start = QueryRecorder.start();
+        ResultSet rs = delegate.executeQuery(sql);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return LoggingResultSet.wrap(rs, lastLog);
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return LoggingResultSet.wrap(delegate.getResultSet(), lastLog);
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        long start = QueryRecorder.start();
+        int result = delegate.executeUpdate(sql);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = QueryRecorder.start();
+        int result = delegate.executeUpdate(sql, autoGeneratedKeys);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long start = QueryRecorder.start();
+        int result = delegate.executeUpdate(sql, columnIndexes);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        long start = QueryRecorder.start();
+        int result = delegate.executeUpdate(sql, columnNames);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql) throws SQLException {
+        long start = QueryRecorder.start();
+        long result = delegate.executeLargeUpdate(sql);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long start = QueryRecorder.start();
+        long result = delegate.executeLargeUpdate(sql, autoGeneratedKeys);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long start = QueryRecorder.start();
+        long result = delegate.executeLargeUpdate(sql, columnIndexes);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+        long start = QueryRecorder.start();
+        long result = delegate.executeLargeUpdate(sql, columnNames);
+        lastLog = QueryRecorder.record(connection, sql, ParameterSnapshot.empty(), start);
+        return result;
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        delegate.addBatch(sql);
+        long allocated = QueryRecorder.allocationMark();
+        batch.add(sql);
+        QueryRecorder.attributeOverhead(allocated);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        delegate.clearBatch();
+        batch.clear();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        if (batch.isEmpty())
+            return delegate.executeBatch();
+
+        List<String> sqls = QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(), new ArrayList<>(batch));
+        batch.clear();
+
+        long start = QueryRecorder.start();
+        int[] result = delegate.executeBatch();
+        QueryRecorder.recordStatementBatch(connection, sqls, start);
+        return result;
+    }
+
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        if (batch.isEmpty())
+            return delegate.executeLargeBatch();
+
+        List<String> sqls = QueryRecorder.attributeOverhead(QueryRecorder.allocationMark(), new ArrayList<>(batch));
+        batch.clear();
+
+        long start = QueryRecorder.start();
+        long[] result = delegate.executeLargeBatch();
+        QueryRecorder.recordStatementBatch(connection, sqls, start);
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+package com.querykeeper.collector;
+
+import java.util.Arrays;
+
+/**
+ * Index-addressed bind parameter buffer reused across executions of one
+ * statement.
+ *
+ * Primitive values are stored unboxed in a {@code long[]} (doubles and floats as
+ * raw bits) next to an {@code Object[]} for reference values, with a
+ * {@code byte[]} recording the kind of each slot. {@link #snapshot()} hands the
+ * current arrays to an immutable {@link ParameterSnapshot} and the buffer copies
+ * them again only when it is written to afterwards.
+ */
+public final class ParameterBuffer {
+
+    static final byte EMPTY = 0;
+    static final byte OBJECT = 1;
+    static final byte INT = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+    static final byte FLOAT = 5;
+    static final byte SHORT = 6;
+    static final byte BYTE = 7;
+    static final byte BOOLEAN = 8;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private byte[] kinds;
+    private long[] primitives;
+    private Object[] objects;
+    private int length;
+    private int count;
+    private boolean shared;
+
+    public ParameterBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ParameterBuffer(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.kinds = new byte[capacity];
+        this.primitives = new long[capacity];
+        this.objects = new Object[capacity];
+    }
+
+    public void setObject(int index, Object value) {
+        int slot = prepare(index);
+        kinds[slot] = OBJECT;
+        objects[slot] = value;
+    }
+
+    public void setInt(int index, int value) {
+        setPrimitive(index, INT, value);
+    }
+
+    public void setLong(int index, long value) {
+        setPrimitive(index, LONG, value);
+    }
+
+    public void setDouble(int index, double value) {
+        setPrimitive(index, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public void setFloat(int index, float value) {
+        setPrimitive(index, FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    public void setShort(int index, short value) {
+        setPrimitive(index, SHORT, value);
+    }
+
+    public void setByte(int index, byte value) {
+        setPrimitive(index, BYTE, value);
+    }
+
+    public void setBoolean(int index, boolean value) {
+        setPrimitive(index, BOOLEAN, value ? 1L : 0L);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void clear() {
+        if (shared) {
+            copy(kinds.length, 0);
+        } else {
+            Arrays.fill(kinds, 0, length, EMPTY);
+            Arrays.fill(objects, 0, length, null);
+        }
+        length = 0;
+        count = 0;
+    }
+
+    /**
+     * Returns an immutable view of the parameters bound so far. The buffer keeps
+     * working on its own copy once it is modified again.
+     */
+    public ParameterSnapshot snapshot() {
+        if (count == 0)
+            return ParameterSnapshot.EMPTY;
+        shared = true;
+        return new ParameterSnapshot(kinds, primitives, objects, length, count);
+    }
+
+    private void setPrimitive(int index, byte kind, long bits) {
+        int slot = prepare(index);
+        kinds[slot] = kind;
+        primitives[slot] = bits;
+        objects[slot] = null;
+    }
+
+    private int prepare(int index) {
+        if (index < 1)
+            throw new IllegalArgumentException("Parameter index must be >= 1: " + index);
+
+        int slot = index - 1;
+        if (shared || slot >= kinds.length) {
+            int capacity = kinds.length;
+            while (slot >= capacity)
+                capacity <<= 1;
+            copy(capacity, length);
+        }
+
+        if (kinds[slot] == EMPTY)
+            count++;
+        if (slot >= length)
+            length = slot + 1;
+        return slot;
+    }
+
+    /**
+     * Replaces the arrays with private ones of the given capacity, keeping the
+     * first {@code keep} slots. Counted as QueryKeeper overhead when the
+     * current context tracks allocations.
+     */
+    private void copy(int capacity, int keep) {
+        long allocated = QueryRecorder.allocationMark();
+        byte[] newKinds = new byte[capacity];
+        long[] newPrimitives = new long[capacity];
+        Object[] newObjects = new Object[capacity];
+        System.arraycopy(kinds, 0, newKinds, 0, keep);
+        System.arraycopy(primitives, 0, newPrimitives, 0, keep);
+        System.arraycopy(objects, 0, newObjects, 0, keep);
+        kinds = newKinds;
+        primitives = newPrimitives;
+        objects = newObjects;
+        shared = false;
+        QueryRecorder.attributeOverhead(allocated);
+    }
+}
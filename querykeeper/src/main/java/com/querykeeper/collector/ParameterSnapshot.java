@@ -0,0 +1,178 @@
+package com.querykeeper.collector;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable, index-ordered view of the parameters bound to one execution.
+ *
+ * Values are boxed lazily on access; iteration follows ascending parameter
+ * index.
+ */
+public final class ParameterSnapshot extends AbstractMap<Integer, Object> {
+
+    static final ParameterSnapshot EMPTY = new ParameterSnapshot(new byte[0], new long[0], new Object[0], 0, 0);
+
+    private final byte[] kinds;
+    private final long[] primitives;
+    private final Object[] objects;
+    private final int length;
+    private final int count;
+
+    ParameterSnapshot(byte[] kinds, long[] primitives, Object[] objects, int length, int count) {
+        this.kinds = kinds;
+        this.primitives = primitives;
+        this.objects = objects;
+        this.length = length;
+        this.count = count;
+    }
+
+    public static ParameterSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the value bound to the 1-based {@code index}, or {@code null} if
+     * nothing was bound.
+     */
+    public Object getValue(int index) {
+        int slot = index - 1;
+        if (slot < 0 || slot >= length)
+            return null;
+        return valueAt(slot);
+    }
+
+    public boolean isBound(int index) {
+        int slot = index - 1;
+        return slot >= 0 && slot < length && kinds[slot] != ParameterBuffer.EMPTY;
+    }
+
+    /**
+     * Highest bound parameter index.
+     */
+    public int maxIndex() {
+        return length;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return key instanceof Integer ? getValue((Integer) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && isBound((Integer) key);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public Set<Entry<Integer, Object>> entrySet() {
+        return new AbstractSet<Entry<Integer, Object>>() {
+            @Override
+            public Iterator<Entry<Integer, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Folds the bound values into {@code seed} without boxing primitives.
+     */
+    long hash(long seed) {
+        long h = seed;
+        for (int slot = 0; slot < length; slot++) {
+            long bits = primitives[slot];
+            long valueHash;
+            switch (kinds[slot]) {
+                case ParameterBuffer.EMPTY:
+                    continue;
+                case ParameterBuffer.INT:
+                case ParameterBuffer.LONG:
+                case ParameterBuffer.SHORT:
+                case ParameterBuffer.BYTE:
+                    valueHash = Fingerprints.hashIntegral(bits);
+                    break;
+                case ParameterBuffer.DOUBLE:
+                    valueHash = Fingerprints.hashFloating(Double.longBitsToDouble(bits));
+                    break;
+                case ParameterBuffer.FLOAT:
+                    valueHash = Fingerprints.hashFloating(Float.intBitsToFloat((int) bits));
+                    break;
+                case ParameterBuffer.BOOLEAN:
+                    valueHash = Fingerprints.hashBoolean(bits != 0L);
+                    break;
+                default:
+                    valueHash = Fingerprints.hashValue(objects[slot]);
+                    break;
+            }
+            h = Fingerprints.combine(h, slot + 1, valueHash);
+        }
+        return h;
+    }
+
+    private Object valueAt(int slot) {
+        long bits = primitives[slot];
+        switch (kinds[slot]) {
+            case ParameterBuffer.OBJECT:
+                return objects[slot];
+            case ParameterBuffer.INT:
+                return (int) bits;
+            case ParameterBuffer.LONG:
+                return bits;
+            case ParameterBuffer.DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case ParameterBuffer.FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            case ParameterBuffer.SHORT:
+                return (short) bits;
+            case ParameterBuffer.BYTE:
+                return (byte) bits;
+            case ParameterBuffer.BOOLEAN:
+                return bits != 0L;
+            default:
+                return null;
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry<Integer, Object>> {
+        private int slot = advance(0);
+
+        @Override
+        public boolean hasNext() {
+            return slot < length;
+        }
+
+        @Override
+        public Entry<Integer, Object> next() {
+            if (slot >= length)
+                throw new NoSuchElementException();
+            Entry<Integer, Object> entry = new SimpleImmutableEntry<>(slot + 1, valueAt(slot));
+            slot = advance(slot + 1);
+            return entry;
+        }
+
+        private int advance(int from) {
+            int i = from;
+            while (i < length && kinds[i] == ParameterBuffer.EMPTY)
+                i++;
+            return i;
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+/**
+ * Exact totals over every query of a context, maintained as queries are
+ * logged. Unlike the {@link QueryJournal}, nothing here grows with the number
+ * of executions: only with the number of distinct SQL strings and call sites,
+ * and both are capped. SQL strings beyond {@value #MAX_SQL_STRINGS} are folded
+ * into the totals of their {@linkplain SqlMetadata#getShape() shape}, and beyond that into one catch-all entry; SELECT
+ * shapes and call sites beyond their caps are only counted (see
+ * {@link #getUntrackedSelects()}).
+ */
+public final class QueryAggregates {
+
+    private static final String[] TYPES = { "SELECT", "INSERT", "UPDATE", "DELETE", "OTHER" };
+
+    /**
+     * Normalized SQL shapes with a latency histogram of their own (about 4 KB
+     * each); further shapes share {@link #getOtherShapesLatency()}.
+     */
+    static final int MAX_LATENCY_SHAPES = 256;
+
+    /**
+     * Distinct SQL strings with totals of their own.
+     */
+    static final int MAX_SQL_STRINGS = 1024;
+
+    /**
+     * Normalized shapes holding the totals of SQL strings past
+     * {@link #MAX_SQL_STRINGS}.
+     */
+    static final int MAX_FOLDED_SHAPES = 1024;
+
+    /**
+     * SELECT shapes, and call sites per shape, tracked for N+1 detection and
+     * EXPLAIN.
+     */
+    static final int MAX_SELECT_SHAPES = 1024;
+    static final int MAX_CALL_SITES_PER_SHAPE = 64;
+
+    static final String OTHER_SQL = "(other SQL)";
+
+    private final LongAdder[] statementsByType = new LongAdder[TYPES.length];
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder dbNanos = new LongAdder();
+    private final LongAdder rowsFetched = new LongAdder();
+    private final LongAdder fetchNanos = new LongAdder();
+    private final LongAdder bytesFetched = new LongAdder();
+    private final LongAdder connectionNanos = new LongAdder();
+    private final ConnectionTracker connections = new ConnectionTracker();
+    private final TransactionTracker transactions = new TransactionTracker();
+    private final LongAdder hydrationBytes = new LongAdder();
+    private final LongAdder overheadBytes = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram otherShapesLatency = new LatencyHistogram();
+    private final ConcurrentHashMap<String, LatencyHistogram> latencyByShape = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicInteger shapeSequence = new AtomicInteger();
+    private final ConcurrentHashMap<String, SqlStats> bySql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SqlStats> foldedByShape = new ConcurrentHashMap<>();
+    private volatile SqlStats otherSql;
+    private final LongAdder untrackedSelects = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> statementsByTable = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> statementsByDataSource = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SelectShape> selectsByShape = new ConcurrentHashMap<>();
+
+    QueryAggregates() {
+        for (int i = 0; i < TYPES.length; i++)
+            statementsByType[i] = new LongAdder();
+    }
+
+    void record(QueryLog log, long fingerprintHash) {
+        SqlMetadata metadata = log.getMetadata();
+        int statements = log.getStatementCount();
+
+        if (!log.isSharedRoundTrip())
+            executions.increment();
+        dbNanos.add(log.durationNanos);
+        statementsByType[typeIndex(metadata.getType())].add(statements);
+        if (!metadata.isInternal()) {
+            for (String table : metadata.getTables())
+                counter(statementsByTable, table).add(statements);
+        }
+        counter(statementsByDataSource, log.dataSource).add(statements);
+        latency.record(log.durationNanos);
+
+        SqlStats sqlStats = bySql.get(log.sql);
+        if (sqlStats == null)
+            sqlStats = sqlStats(log.sql, metadata);
+        sqlStats.add(log, statements);
+        log.attach(sqlStats);
+
+        if ("SELECT".equals(metadata.getType()) && !metadata.isInternal()) {
+            SelectShape shape = selectsByShape.get(metadata.getShape());
+            if (shape == null && selectsByShape.size() < MAX_SELECT_SHAPES)
+                shape = selectsByShape.computeIfAbsent(metadata.getShape(),
+                        sql -> new SelectShape(shapeSequence.getAndIncrement()));
+            if (shape == null || !shape.add(log, fingerprintHash))
+                untrackedSelects.increment();
+        }
+    }
+
+    /**
+     * Returns the totals {@code sql} is counted in: its own while there is
+     * room, otherwise those of its shape, otherwise the catch-all entry.
+     */
+    private SqlStats sqlStats(String sql, SqlMetadata metadata) {
+        if (bySql.size() < MAX_SQL_STRINGS)
+            return bySql.computeIfAbsent(sql, key -> new SqlStats(this, key, metadata, sequence.getAndIncrement()));
+
+        String shape = metadata.getShape();
+        SqlStats folded = foldedByShape.get(shape);
+        if (folded != null)
+            return folded;
+        if (foldedByShape.size() < MAX_FOLDED_SHAPES)
+            return foldedByShape.computeIfAbsent(shape,
+                    key -> new SqlStats(this, key, metadata, sequence.getAndIncrement()));
+
+        SqlStats other = otherSql;
+        if (other == null) {
+            synchronized (this) {
+                other = otherSql;
+                if (other == null)
+                    otherSql = other = new SqlStats(this, OTHER_SQL, metadata, sequence.getAndIncrement());
+            }
+        }
+        return other;
+    }
+
+    void addOverheadBytes(long bytes) {
+        overheadBytes.add(bytes);
+    }
+
+    /**
+     * Overhead and hydration bytes attributed so far. Both are only added by
+     * the tracking thread, so the difference of two readings on that thread is
+     * what was attributed in between.
+     */
+    long getAttributedBytes() {
+        return overheadBytes.sum() + hydrationBytes.sum();
+    }
+
+    ConnectionTracker.Lease recordConnection(String dataSource, long nanos) {
+        connectionNanos.add(nanos);
+        return connections.acquire(dataSource, nanos);
+    }
+
+    /**
+     * Copies the counters into an immutable snapshot. The cost depends on the
+     * number of distinct tables and DataSources, not on the number of queries.
+     */
+    public QueryStatistics snapshot() {
+        long[] byType = new long[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++)
+            byType[i] = statementsByType[i].sum();
+        return new QueryStatistics(byType[0], byType[1], byType[2], byType[3], byType[4], executions.sum(),
+                dbNanos.sum(), fetchNanos.sum(), connections.getAcquired(), connectionNanos.sum(), sums(statementsByTable),
+                sums(statementsByDataSource));
+    }
+
+    /**
+     * Statements of the given type (SELECT, INSERT, UPDATE, DELETE or OTHER),
+     * counting every statement of a batch.
+     */
+    public long getStatementCount(String type) {
+        return statementsByType[typeIndex(type)].sum();
+    }
+
+    /**
+     * Round trips to the database; a batch counts once.
+     */
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * Time spent inside JDBC execute calls.
+     */
+    public long getDbNanos() {
+        return dbNanos.sum();
+    }
+
+    public long getRowsFetched() {
+        return rowsFetched.sum();
+    }
+
+    public long getFetchNanos() {
+        return fetchNanos.sum();
+    }
+
+    public long getBytesFetched() {
+        return bytesFetched.sum();
+    }
+
+    /**
+     * Bytes allocated by the tracking thread between {@code ResultSet.next()}
+     * calls, i.e. while the rows were turned into objects. Only recorded after
+     * {@link QueryKeeperContext#trackAllocations()}.
+     */
+    public long getHydrationBytes() {
+        return hydrationBytes.sum();
+    }
+
+    /**
+     * Bytes allocated by QueryKeeper itself while capturing queries on the
+     * tracking thread.
+     */
+    public long getOverheadBytes() {
+        return overheadBytes.sum();
+    }
+
+    /**
+     * Connections obtained from a {@link LoggingDataSource}.
+     */
+    public long getConnectionCount() {
+        return connections.getAcquired();
+    }
+
+    /**
+     * Time spent waiting for {@code DataSource.getConnection()}.
+     */
+    public long getConnectionNanos() {
+        return connectionNanos.sum();
+    }
+
+    public ConnectionTracker getConnectionTracker() {
+        return connections;
+    }
+
+    public TransactionTracker getTransactionTracker() {
+        return transactions;
+    }
+
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    /**
+     * Latencies of the SQL shapes seen after the first
+     * {@value #MAX_LATENCY_SHAPES}, which do not get a histogram of their own.
+     */
+    public LatencyHistogram getOtherShapesLatency() {
+        return otherShapesLatency;
+    }
+
+    private LatencyHistogram shapeLatency(String normalizedSql) {
+        LatencyHistogram histogram = latencyByShape.get(normalizedSql);
+        if (histogram != null)
+            return histogram;
+        if (latencyByShape.size() >= MAX_LATENCY_SHAPES)
+            return otherShapesLatency;
+        return latencyByShape.computeIfAbsent(normalizedSql, shape -> new LatencyHistogram());
+    }
+
+    /**
+     * Per-SQL totals in order of first execution. Past
+     * {@value #MAX_SQL_STRINGS} distinct strings, entries are per
+     * {@linkplain SqlMetadata#getShape() shape} (their {@link SqlStats#getSql()}
+     * is the shape) and finally one
+     * entry named {@value #OTHER_SQL}.
+     */
+    public List<SqlStats> getSqlStats() {
+        List<SqlStats> result = new ArrayList<>(bySql.values());
+        result.addAll(foldedByShape.values());
+        SqlStats other = otherSql;
+        if (other != null)
+            result.add(other);
+        result.sort(Comparator.comparingInt(stats -> stats.order));
+        return result;
+    }
+
+    /**
+     * Non-internal SELECTs grouped by {@linkplain SqlMetadata#getShape() shape}
+     * and caller.
+     */
+    public List<CallSiteStats> getSelectCallSites() {
+        List<CallSiteStats> result = new ArrayList<>();
+        for (SelectShape shape : selectsByShape.values())
+            result.addAll(shape.callers.values());
+        return result;
+    }
+
+    /**
+     * SELECTs whose shape or call site was past the tracking caps and is
+     * therefore missing from {@link #getSelectCallSites()} and
+     * {@link #getExplainSamples()}.
+     */
+    public long getUntrackedSelects() {
+        return untrackedSelects.sum();
+    }
+
+    /**
+     * First execution of every non-internal, non-batch SELECT shape per
+     * DataSource, in order of first execution. Kept for every shape, so that
+     * plans can be checked even after the journal has dropped the statements.
+     */
+    public List<QueryLog> getExplainSamples() {
+        List<SelectShape> shapes = new ArrayList<>(selectsByShape.values());
+        shapes.sort(Comparator.comparingInt(shape -> shape.order));
+        List<QueryLog> result = new ArrayList<>();
+        for (SelectShape shape : shapes)
+            result.addAll(shape.samples);
+        return result;
+    }
+
+    private static LongAdder counter(ConcurrentHashMap<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        if (counter == null)
+            counter = counters.computeIfAbsent(key, k -> new LongAdder());
+        return counter;
+    }
+
+    private static Map<String, Long> sums(ConcurrentHashMap<String, LongAdder> counters) {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((key, counter) -> result.put(key, counter.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static int typeIndex(String type) {
+        for (int i = 0; i < TYPES.length - 1; i++) {
+            if (TYPES[i].equals(type))
+                return i;
+        }
+        return TYPES.length - 1;
+    }
+
+    public static final class SqlStats {
+        private final QueryAggregates owner;
+        private final String sql;
+        private final SqlMetadata metadata;
+        private final int order;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder roundTrips = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final AtomicInteger largestBatch = new AtomicInteger();
+        private final LongAdder rows = new LongAdder();
+        private final AtomicLong maxRows = new AtomicLong();
+        private final LatencyHistogram latency;
+        private final LongAdder hydrationBytes = new LongAdder();
+        private volatile String maxRowsCaller;
+
+        SqlStats(QueryAggregates owner, String sql, SqlMetadata metadata, int order) {
+            this.owner = owner;
+            this.sql = sql;
+            this.metadata = metadata;
+            this.order = order;
+            this.latency = owner.shapeLatency(metadata.getShape());
+        }
+
+        void add(QueryLog log, int statementCount) {
+            executions.increment();
+            if (!log.isSharedRoundTrip())
+                roundTrips.increment();
+            statements.add(statementCount);
+            latency.record(log.durationNanos);
+            if (statementCount > largestBatch.get())
+                largestBatch.accumulateAndGet(statementCount, Math::max);
+        }
+
+        /**
+         * Called by the result set of one execution for every row fetched;
+         * {@code rowsSoFar} is that execution's running row count.
+         */
+        void addFetch(boolean hasRow, long rowsSoFar, long nanos, long bytes, String caller) {
+            owner.fetchNanos.add(nanos);
+            owner.bytesFetched.add(bytes);
+            if (!hasRow)
+                return;
+            rows.increment();
+            owner.rowsFetched.increment();
+            if (rowsSoFar > maxRows.get() && maxRows.accumulateAndGet(rowsSoFar, Math::max) == rowsSoFar)
+                maxRowsCaller = caller;
+        }
+
+        void addHydration(long bytes) {
+            hydrationBytes.add(bytes);
+            owner.hydrationBytes.add(bytes);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public SqlMetadata getMetadata() {
+            return metadata;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        /**
+         * Round trips started by this SQL. Lower than {@link #getExecutions()}
+         * when it was sent together with other SQL in one {@code Statement}
+         * batch, whose round trip is counted for its first SQL only.
+         */
+        public long getRoundTrips() {
+            return roundTrips.sum();
+        }
+
+        public long getStatements() {
+            return statements.sum();
+        }
+
+        public int getLargestBatch() {
+            return largestBatch.get();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * Most rows fetched by a single execution.
+         */
+        public long getMaxRows() {
+            return maxRows.get();
+        }
+
+        public String getMaxRowsCaller() {
+            return maxRowsCaller;
+        }
+
+        public long getHydrationBytes() {
+            return hydrationBytes.sum();
+        }
+
+        /**
+         * Execution latencies of this SQL's {@linkplain SqlMetadata#getShape()
+         * shape}, shared with every SQL string that differs from it only in
+         * literals, or
+         * {@link QueryAggregates#getOtherShapesLatency()} once
+         * {@value QueryAggregates#MAX_LATENCY_SHAPES} shapes have a histogram.
+         */
+        public LatencyHistogram getLatencyHistogram() {
+            return latency;
+        }
+    }
+
+    /**
+     * Callers and explain samples of one SELECT shape.
+     */
+    private static final class SelectShape {
+        private final int order;
+        private final ConcurrentHashMap<String, CallSiteStats> callers = new ConcurrentHashMap<>();
+        private final CopyOnWriteArrayList<QueryLog> samples = new CopyOnWriteArrayList<>();
+
+        SelectShape(int order) {
+            this.order = order;
+        }
+
+        /**
+         * Returns {@code false} if the call site could not be tracked.
+         */
+        boolean add(QueryLog log, long fingerprintHash) {
+            if (!log.isBatch() && !hasSample(log.getOrigin()))
+                addSample(log);
+            CallSiteStats site = callers.get(log.caller);
+            if (site == null) {
+                if (callers.size() >= MAX_CALL_SITES_PER_SHAPE)
+                    return false;
+                site = callers.computeIfAbsent(log.caller, caller -> new CallSiteStats(log, fingerprintHash));
+            }
+            site.add(fingerprintHash);
+            return true;
+        }
+
+        private boolean hasSample(DataSource origin) {
+            for (QueryLog sample : samples) {
+                if (sample.getOrigin() == origin)
+                    return true;
+            }
+            return false;
+        }
+
+        private synchronized void addSample(QueryLog log) {
+            if (!hasSample(log.getOrigin()))
+                samples.add(log);
+        }
+    }
+
+    public static final class CallSiteStats {
+        private final QueryLog sample;
+        private final long firstFingerprint;
+        private final LongAdder executions = new LongAdder();
+        private volatile boolean varied;
+
+        CallSiteStats(QueryLog sample, long firstFingerprint) {
+            this.sample = sample;
+            this.firstFingerprint = firstFingerprint;
+        }
+
+        void add(long fingerprintHash) {
+            executions.increment();
+            if (!varied && fingerprintHash != firstFingerprint)
+                varied = true;
+        }
+
+        /**
+         * First execution from this call site.
+         */
+        public QueryLog getSample() {
+            return sample;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        /**
+         * Whether executions used more than one set of parameter values.
+         */
+        public boolean hasVaryingParameters() {
+            return varied;
+        }
+    }
+}
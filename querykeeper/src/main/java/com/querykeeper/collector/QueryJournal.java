@@ -0,0 +1,89 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Detailed log of the most recent queries of one context.
+ *
+ * With a positive capacity the journal is a preallocated ring buffer that keeps
+ * the last {@code capacity} queries and drops older ones, while exact totals
+ * are kept by {@link QueryAggregates}. With a capacity of 0 or less every query
+ * is kept.
+ *
+ * The default capacity is read from the {@code querykeeper.journal.capacity}
+ * system property (default 10000).
+ */
+public final class QueryJournal {
+
+    private static volatile int defaultCapacity = Integer.getInteger("querykeeper.journal.capacity", 10_000);
+
+    private final int capacity;
+    private final AtomicReferenceArray<QueryLog> ring;
+    private final QueryLogBuffer unbounded;
+    private final AtomicLong total = new AtomicLong();
+
+    public QueryJournal(int capacity) {
+        this.capacity = capacity;
+        this.ring = capacity > 0 ? new AtomicReferenceArray<>(capacity) : null;
+        this.unbounded = capacity > 0 ? null : new QueryLogBuffer();
+    }
+
+    public static int getDefaultCapacity() {
+        return defaultCapacity;
+    }
+
+    public static void setDefaultCapacity(int capacity) {
+        defaultCapacity = capacity;
+    }
+
+    void add(QueryLog log) {
+        long sequence = total.getAndIncrement();
+        if (ring != null)
+            ring.set((int) (sequence % capacity), log);
+        else
+            unbounded.add(log);
+    }
+
+    /**
+     * Number of queries ever added, including dropped ones.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Maximum number of retained queries, or 0 or less if unbounded.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getDropped() {
+        return ring == null ? 0 : Math.max(0, total.get() - capacity);
+    }
+
+    /**
+     * Returns the retained queries, oldest first.
+     */
+    public List<QueryLog> snapshot() {
+        if (ring == null)
+            return unbounded.snapshot();
+
+        long end = total.get();
+        long start = Math.max(0, end - capacity);
+        if (start == end)
+            return Collections.emptyList();
+
+        List<QueryLog> result = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            QueryLog log = ring.get((int) (sequence % capacity));
+            if (log != null)
+                result.add(log);
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
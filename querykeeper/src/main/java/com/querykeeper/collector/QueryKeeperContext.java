@@ -1,45 +1,299 @@
 package com.querykeeper.collector;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Collects the queries and detached accesses of one test (or other scope).
+ *
+ * A context is bound to the thread that opened it and can be carried to other
+ * threads with {@link #wrap(Runnable)}, {@link #wrap(Callable)} or
+ * {@link #wrap(ExecutorService)}. Threads that carry no binding, such as the
+ * common {@code ForkJoinPool} behind parallel streams, record into the active
+ * context when exactly one is open (unless turned off with
+ * {@link #setSoleActiveFallback(boolean)}). Otherwise they fall back to a
+ * context of their own, and every active context counts the query as
+ * unattributed (see {@link #getUnattributedQueries()}), since any of them may
+ * have issued it.
+ *
+ * Work that belongs to a test but must not be measured, such as its fixtures,
+ * runs under an {@linkplain #openUnmeasured() unmeasured} context, which owns
+ * the queries of its thread and discards them.
+ *
+ * On Java 21 virtual threads additionally inherit the binding of the thread
+ * that started them (see {@code ContextStorage}).
+ */
 public class QueryKeeperContext {
 
-    private static final ThreadLocal<QueryKeeperContext> CURRENT = ThreadLocal.withInitial(QueryKeeperContext::new);
-    private static final ThreadLocal<List<QueryLog>> QUERY_LOGS = ThreadLocal.withInitial(ArrayList::new);
-    private final Map<String, Integer> queryFingerprintCount = new HashMap<>();
+    private static final Set<QueryKeeperContext> ACTIVE = ConcurrentHashMap.newKeySet();
+    private static volatile QueryKeeperContext soleActive;
+    private static volatile boolean captureUnscoped = true;
+    private static volatile boolean soleActiveFallback = true;
+
+    private final QueryJournal journal;
+    private final QueryAggregates aggregates = new QueryAggregates();
+    private final DuplicateTracker duplicateTracker = new DuplicateTracker();
 
     private final Map<String, DetachedAccessInfo> detachedAccessMap = new ConcurrentHashMap<>();
+    private final AtomicLong unattributedQueries = new AtomicLong();
+    private final boolean fallback;
+    private final boolean measured;
+
+    private volatile boolean closed;
+    private volatile long allocationThreadId = -1;
+
+    public QueryKeeperContext() {
+        this(false, true);
+    }
+
+    private QueryKeeperContext(boolean fallback, boolean measured) {
+        this.fallback = fallback;
+        this.measured = measured;
+        this.journal = new QueryJournal(measured ? QueryJournal.getDefaultCapacity() : 0);
+    }
+
+    /**
+     * Creates the context of a thread that carries no binding.
+     */
+    static QueryKeeperContext newFallback() {
+        return new QueryKeeperContext(true, true);
+    }
 
     public static QueryKeeperContext getCurrent() {
-        return CURRENT.get();
+        QueryKeeperContext bound = ContextStorage.bound();
+        if (bound != null)
+            return bound;
+        QueryKeeperContext active = soleActiveFallback ? soleActive : null;
+        if (active != null)
+            return active;
+        return ContextStorage.fallback();
+    }
+
+    /**
+     * Opens a new context, binds it to the calling thread and registers it as
+     * active until {@link #close()}.
+     */
+    public static QueryKeeperContext open() {
+        QueryKeeperContext context = new QueryKeeperContext();
+        ContextStorage.bind(context);
+        synchronized (ACTIVE) {
+            ACTIVE.add(context);
+            refreshSoleActive();
+        }
+        return context;
+    }
+
+    /**
+     * Opens a context that is bound to the calling thread but not registered
+     * as active. Queries of the thread are owned by it and discarded instead of
+     * reaching another test's context or counting as unattributed, and threads
+     * without a binding never record into it. Closed with {@link #close()}.
+     */
+    public static QueryKeeperContext openUnmeasured() {
+        QueryKeeperContext context = new QueryKeeperContext(false, false);
+        ContextStorage.bind(context);
+        return context;
     }
 
+    /**
+     * Deactivates this context and unbinds it from the calling thread.
+     */
+    public void close() {
+        closed = true;
+        synchronized (ACTIVE) {
+            ACTIVE.remove(this);
+            refreshSoleActive();
+            if (ACTIVE.isEmpty())
+                ContextStorage.resetSharedFallback();
+        }
+        if (ContextStorage.bound() == this)
+            ContextStorage.unbind();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Starts attributing allocations of the calling thread: QueryKeeper's own
+     * capture work is counted as overhead and the allocations between
+     * {@code ResultSet.next()} calls as hydration of the query's rows. Does
+     * nothing if {@link AllocationMeter#isSupported()} is {@code false}.
+     */
+    public void trackAllocations() {
+        if (AllocationMeter.isSupported())
+            allocationThreadId = Thread.currentThread().getId();
+    }
+
+    boolean isTrackingAllocations() {
+        long threadId = allocationThreadId;
+        return threadId >= 0 && threadId == Thread.currentThread().getId();
+    }
+
+    /**
+     * Unbinds the calling thread and drops its fallback context. Fallback
+     * contexts shared between threads are only reset once no context is
+     * active, so this never affects tests running in parallel.
+     */
     public static void clear() {
-        CURRENT.set(new QueryKeeperContext());
-        QUERY_LOGS.set(new ArrayList<>());
+        ContextStorage.unbind();
+        ContextStorage.clearFallback();
+    }
+
+    /**
+     * Whether queries issued outside of any opened context are logged (default
+     * {@code true}). The production runtime mode turns this off so that
+     * application threads do not accumulate {@code QueryLog}s.
+     */
+    public static void setCaptureUnscoped(boolean capture) {
+        captureUnscoped = capture;
+    }
+
+    /**
+     * Whether threads bound to no context record into the only active one
+     * (default {@code true}). Under parallel test execution another test may
+     * start at any moment, so the only active context is not necessarily the
+     * owner of such a query; with this turned off it counts as unattributed
+     * instead.
+     */
+    public static void setSoleActiveFallback(boolean enabled) {
+        soleActiveFallback = enabled;
+    }
+
+    static boolean isCapturing() {
+        QueryKeeperContext bound = ContextStorage.bound();
+        if (bound != null)
+            return bound.measured;
+        return captureUnscoped || soleActive != null || !ACTIVE.isEmpty();
+    }
+
+    private static void refreshSoleActive() {
+        soleActive = ACTIVE.size() == 1 ? ACTIVE.iterator().next() : null;
+    }
+
+    /**
+     * Runs {@code task} with the caller's current context bound.
+     */
+    public static Runnable wrap(Runnable task) {
+        QueryKeeperContext captured = getCurrent();
+        return () -> {
+            QueryKeeperContext previous = ContextStorage.bound();
+            ContextStorage.bind(captured);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Calls {@code task} with the caller's current context bound.
+     */
+    public static <V> Callable<V> wrap(Callable<V> task) {
+        QueryKeeperContext captured = getCurrent();
+        return () -> {
+            QueryKeeperContext previous = ContextStorage.bound();
+            ContextStorage.bind(captured);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Returns an executor that propagates the submitting thread's context to
+     * every task.
+     */
+    public static ExecutorService wrap(ExecutorService executor) {
+        return new ContextPropagatingExecutorService(executor);
+    }
+
+    private static void restore(QueryKeeperContext previous) {
+        if (previous == null)
+            ContextStorage.unbind();
+        else
+            ContextStorage.bind(previous);
     }
 
     public void log(QueryLog log) {
-        QUERY_LOGS.get().add(log);
+        if (!measured)
+            return;
+        if (fallback && !log.getMetadata().isInternal())
+            attributeToActive();
+        long hash = log.getMetadata().isInternal() ? 0 : log.fingerprintHash();
+        journal.add(log);
+        aggregates.record(log, hash);
+        if (!log.getMetadata().isInternal())
+            duplicateTracker.record(log, hash);
+    }
 
-        String fp = log.fingerprint();
-        queryFingerprintCount.merge(fp, 1, Integer::sum);
+    /**
+     * A query landed in a fallback context while more than one context was
+     * active: it cannot be told which test issued it, so all of them are told.
+     */
+    private static void attributeToActive() {
+        for (QueryKeeperContext active : ACTIVE) {
+            active.unattributedQueries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Number of queries issued on threads bound to no context while this
+     * context was active alongside others. These queries are missing from this
+     * context's counts if they belonged to its test.
+     */
+    public long getUnattributedQueries() {
+        return unattributedQueries.get();
     }
 
+    /**
+     * Returns the queries retained by the journal, in recording order. With a
+     * bounded journal these are only the most recent ones; use
+     * {@link #getAggregates()} for exact totals.
+     */
     public List<QueryLog> getLogs() {
-        return QUERY_LOGS.get();
+        return journal.snapshot();
+    }
+
+    /**
+     * Number of queries logged, including those dropped from the journal.
+     */
+    public long getLogCount() {
+        return journal.getTotal();
+    }
+
+    public QueryJournal getJournal() {
+        return journal;
+    }
+
+    public QueryAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Returns a snapshot of the counters, maintained as queries are logged.
+     */
+    public QueryStatistics getStatistics() {
+        return aggregates.snapshot();
+    }
+
+    public DuplicateTracker getDuplicateTracker() {
+        return duplicateTracker;
     }
 
     public Map<String, Integer> getDuplicateQueryFingerprints() {
-        return queryFingerprintCount.entrySet().stream()
-                .filter(e -> e.getValue() > 1)
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        return duplicateTracker.getDuplicates().stream()
+                .collect(Collectors.toMap(DuplicateTracker.Duplicate::getFingerprint,
+                        DuplicateTracker.Duplicate::getCount, Integer::sum));
     }
 
     public void markDetachedAccess(String entityName, String fieldName, String rootEntityName, String fullPath) {
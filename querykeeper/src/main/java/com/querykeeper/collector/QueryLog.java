@@ -1,81 +1,165 @@
 package com.querykeeper.collector;
 
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
 
 public class QueryLog {
+    /**
+     * Name reported for queries of a DataSource that was wrapped without a name.
+     */
+    public static final String DEFAULT_DATA_SOURCE = "dataSource";
+
     public final String sql;
     public final Map<Integer, Object> parameters;
     public final long durationMs;
+    public final long durationNanos;
     public final String caller;
+    public final List<Map<Integer, Object>> batchParameters;
+    public final String dataSource;
+    /**
+     * Id of the transaction the query ran in, or
+     * {@link TransactionTracker#AUTO_COMMIT}.
+     */
+    public final long transactionId;
+    private final SqlMetadata metadata;
+    private final DataSource origin;
+    private final boolean sharedRoundTrip;
+    private volatile ResultSetStats resultSetStats;
+    private volatile QueryAggregates.SqlStats sqlStats;
 
     public QueryLog(String sql, Map<Integer, Object> parameters, long durationMs, String caller) {
+        this(sql, parameters, durationMs, caller, Collections.<Map<Integer, Object>>emptyList());
+    }
+
+    public QueryLog(String sql, Map<Integer, Object> parameters, long durationMs, String caller,
+            List<Map<Integer, Object>> batchParameters) {
+        this(sql, parameters, batchParameters, TimeUnit.MILLISECONDS.toNanos(durationMs), caller,
+                DEFAULT_DATA_SOURCE);
+    }
+
+    public QueryLog(String sql, Map<Integer, Object> parameters, List<Map<Integer, Object>> batchParameters,
+            long durationNanos, String caller, String dataSource) {
+        this(sql, parameters, batchParameters, durationNanos, caller, dataSource, TransactionTracker.AUTO_COMMIT);
+    }
+
+    public QueryLog(String sql, Map<Integer, Object> parameters, List<Map<Integer, Object>> batchParameters,
+            long durationNanos, String caller, String dataSource, long transactionId) {
+        this(sql, parameters, batchParameters, durationNanos, caller, dataSource, transactionId, null, false);
+    }
+
+    QueryLog(String sql, Map<Integer, Object> parameters, List<Map<Integer, Object>> batchParameters,
+            long durationNanos, String caller, String dataSource, long transactionId, DataSource origin,
+            boolean sharedRoundTrip) {
         this.sql = sql;
         this.parameters = parameters;
-        this.durationMs = durationMs;
+        this.durationNanos = durationNanos;
+        this.durationMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
         this.caller = caller;
+        this.batchParameters = batchParameters;
+        this.dataSource = dataSource;
+        this.transactionId = transactionId;
+        this.metadata = SqlMetadata.of(sql);
+        this.origin = origin;
+        this.sharedRoundTrip = sharedRoundTrip;
+    }
+
+    /**
+     * The DataSource wrapped by the {@link LoggingDataSource} that ran this
+     * query, or {@code null} if it was not run through one.
+     */
+    DataSource getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Whether this query was sent in the same round trip as the log before it:
+     * a plain {@code Statement} batch mixing several SQL strings is logged once
+     * per distinct SQL, and all but the first share the first one's round trip.
+     */
+    public boolean isSharedRoundTrip() {
+        return sharedRoundTrip;
+    }
+
+    public boolean isBatch() {
+        return !batchParameters.isEmpty();
+    }
+
+    /**
+     * Returns the consumption statistics of the result set produced by this
+     * query, or {@code null} if it produced none.
+     */
+    public ResultSetStats getResultSetStats() {
+        return resultSetStats;
+    }
+
+    /**
+     * @param allocations aggregates of the context that attributes the
+     *                    allocations of the calling thread, or {@code null}
+     */
+    synchronized ResultSetStats openResultSetStats(QueryAggregates allocations) {
+        if (resultSetStats == null)
+            resultSetStats = new ResultSetStats(sqlStats, caller, allocations);
+        return resultSetStats;
+    }
+
+    void attach(QueryAggregates.SqlStats stats) {
+        this.sqlStats = stats;
+    }
+
+    /**
+     * Number of statements sent in this round trip: the batch size for
+     * {@code executeBatch()}, otherwise 1.
+     */
+    public int getStatementCount() {
+        return isBatch() ? batchParameters.size() : 1;
+    }
+
+    public SqlMetadata getMetadata() {
+        return metadata;
     }
 
     public String getType() {
-        String lower = sql.trim().toLowerCase();
-        if (lower.startsWith("select"))
-            return "SELECT";
-        if (lower.startsWith("insert"))
-            return "INSERT";
-        if (lower.startsWith("update"))
-            return "UPDATE";
-        if (lower.startsWith("delete"))
-            return "DELETE";
-        return "OTHER";
+        return metadata.getType();
     }
 
     public String fingerprint() {
-        if (isAutoGeneratedOrInternalQuery(sql))
+        if (metadata.isInternal())
             return null;
 
         StringBuilder sb = new StringBuilder();
         sb.append(sql);
-        parameters.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEach(e -> sb.append("|").append(e.getKey()).append("=").append(String.valueOf(e.getValue())));
+        if (isBatch()) {
+            for (Map<Integer, Object> row : batchParameters) {
+                sb.append("|batch");
+                appendParameters(sb, row);
+            }
+        } else {
+            appendParameters(sb, parameters);
+        }
         return sb.toString();
     }
 
-    private static final List<Pattern> IGNORE_PATTERNS = Arrays.asList(
-            Pattern.compile("^select\\s+next\\s+value\\s+for", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+currval", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+last_insert_id", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^call\\s+identity", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+@@identity", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+1(\\s+from.*)?$", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+current_\\w+", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+hibernate_sequence\\.nextval", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^pragma\\s+table_info", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^show\\s+create\\s+table", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+(nextval|currval)\\s*\\(?['\"]?\\w+['\"]?\\)?", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+.*from\\s+(information_schema|all_tab_columns|user_sequences)",
-                    Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+\\*\\s+from\\s+dual", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+sysdate\\s+from\\s+dual", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+user\\s+from\\s+dual", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+@@session\\.\\w+", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+pg_catalog\\..*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+pg_get_serial_sequence.*", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+hibernate_sequence\\.nextval", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+sequence_name\\s+from\\s+all_sequences", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+constraint_name\\s+from\\s+user_constraints", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+\\*\\s+from\\s+information_schema\\.key_column_usage",
-                    Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+1\\s+from\\s+dual\\s+where\\s+1\\s*=\\s*\\?", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+version\\(\\)", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+@@autocommit", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^select\\s+database\\(\\)", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("^call\\s+next\\s+value\\s+for", Pattern.CASE_INSENSITIVE));
-
-    private static boolean isAutoGeneratedOrInternalQuery(String sql) {
-        String normalized = sql.trim().toLowerCase().replaceAll("\\s+", " ");
-        return IGNORE_PATTERNS.stream().anyMatch(p -> p.matcher(normalized).find());
+    /**
+     * 64-bit hash of the same inputs as {@link #fingerprint()}, computed without
+     * building the string.
+     */
+    public long fingerprintHash() {
+        long h = metadata.getSqlHash();
+        if (isBatch()) {
+            for (Map<Integer, Object> row : batchParameters)
+                h = Fingerprints.hashParameters(Fingerprints.batchRow(h), row);
+            return h;
+        }
+        return Fingerprints.hashParameters(h, parameters);
+    }
+
+    private static void appendParameters(StringBuilder sb, Map<Integer, Object> parameters) {
+        parameters.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> sb.append("|").append(e.getKey()).append("=").append(String.valueOf(e.getValue())));
     }
 }
@@ -0,0 +1,77 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free, append-only log shared by every thread recording into one
+ * context.
+ *
+ * Writers reserve a slot with a single atomic increment and publish into
+ * geometrically growing chunks (32, 64, 128, ... entries), so appends never
+ * copy or block each other.
+ */
+final class QueryLogBuffer {
+
+    private static final int FIRST_CHUNK_BITS = 5;
+    private static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_BITS;
+    private static final int MAX_CHUNKS = 31 - FIRST_CHUNK_BITS;
+
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicReferenceArray<QueryLog>> chunks = new AtomicReferenceArray<>(
+            MAX_CHUNKS);
+
+    void add(QueryLog log) {
+        int index = reserved.getAndIncrement();
+        if (index < 0)
+            throw new IllegalStateException("QueryKeeper log capacity exceeded");
+
+        int position = index + FIRST_CHUNK_SIZE;
+        int chunk = 31 - Integer.numberOfLeadingZeros(position) - FIRST_CHUNK_BITS;
+        chunkAt(chunk).set(position - (FIRST_CHUNK_SIZE << chunk), log);
+    }
+
+    int size() {
+        return reserved.get();
+    }
+
+    /**
+     * Returns the entries published so far in append order. Slots reserved by a
+     * writer that has not finished publishing are skipped.
+     */
+    List<QueryLog> snapshot() {
+        int size = reserved.get();
+        if (size == 0)
+            return Collections.emptyList();
+
+        List<QueryLog> result = new ArrayList<>(size);
+        int remaining = size;
+        for (int chunk = 0; remaining > 0; chunk++) {
+            AtomicReferenceArray<QueryLog> entries = chunks.get(chunk);
+            int length = FIRST_CHUNK_SIZE << chunk;
+            if (entries != null) {
+                for (int i = 0; i < length && i < remaining; i++) {
+                    QueryLog log = entries.get(i);
+                    if (log != null)
+                        result.add(log);
+                }
+            }
+            remaining -= length;
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private AtomicReferenceArray<QueryLog> chunkAt(int chunk) {
+        AtomicReferenceArray<QueryLog> entries = chunks.get(chunk);
+        if (entries != null)
+            return entries;
+
+        AtomicReferenceArray<QueryLog> created = new AtomicReferenceArray<>(FIRST_CHUNK_SIZE << chunk);
+        if (chunks.compareAndSet(chunk, null, created))
+            return created;
+        return chunks.get(chunk);
+    }
+}
@@ -0,0 +1,207 @@
+package com.querykeeper.collector;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+/**
+ * Runs EXPLAIN for captured SELECTs and parses the plans (H2, PostgreSQL and
+ * MySQL/MariaDB).
+ *
+ * A statement is explained on a connection of the DataSource that ran it,
+ * taken from the wrapped target so that the EXPLAIN itself is not captured,
+ * with the parameters of its first execution bound. Plans are cached per
+ * DataSource instance and normalized SQL, so a statement shape shared by many
+ * tests of a suite is only explained once, while cached Spring contexts whose
+ * DataSources share a bean name keep their own plans.
+ */
+public final class QueryPlanner {
+
+    private static final int MAX_CACHED_PLANS = 2048;
+
+    private static final ConcurrentHashMap<PlanKey, ExplainPlan> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * A table after FROM or JOIN, its optional alias and the comment in which H2
+     * names the access path, such as {@code PUBLIC.T.tableScan} or
+     * {@code PUBLIC.IDX_T_NAME: NAME = ?1}.
+     */
+    private static final Pattern H2_TABLE_ACCESS = Pattern.compile(
+            "\\b(?:from|join)\\s+((?:\"[^\"]+\"|\\w+)(?:\\.(?:\"[^\"]+\"|\\w+))*)(?:\\s+(?:\"[^\"]+\"|\\w+))?"
+                    + "\\s*/\\*\\s*(.*?)\\s*\\*/",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern PG_SEQ_SCAN = Pattern.compile("(?:Parallel )?Seq Scan on (\\S+)");
+    private static final Pattern PG_INDEX_SCAN = Pattern
+            .compile("(?:Parallel )?Index (?:Only )?Scan (?:Backward )?using (\\S+) on (\\S+)");
+    private static final Pattern PG_BITMAP_HEAP_SCAN = Pattern.compile("Bitmap Heap Scan on (\\S+)");
+    private static final Pattern PG_BITMAP_INDEX_SCAN = Pattern.compile("Bitmap Index Scan on (\\S+)");
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * Returns the plan of {@code log}'s SQL, explaining it on first use.
+     *
+     * @throws SQLException if it did not run through a {@link LoggingDataSource},
+     *                      the database is not supported or EXPLAIN fails
+     */
+    public static ExplainPlan explain(QueryLog log) throws SQLException {
+        DataSource dataSource = log.getOrigin();
+        if (dataSource == null)
+            throw new SQLException("Not run through a LoggingDataSource");
+
+        PlanKey key = new PlanKey(dataSource, log.getMetadata().getNormalizedSql());
+        ExplainPlan cached = CACHE.get(key);
+        if (cached != null)
+            return cached;
+
+        ExplainPlan plan;
+        try (Connection connection = dataSource.getConnection()) {
+            plan = explain(connection, log.sql, log.parameters);
+        }
+        if (CACHE.size() >= MAX_CACHED_PLANS)
+            CACHE.clear();
+        CACHE.put(key, plan);
+        return plan;
+    }
+
+    static ExplainPlan explain(Connection connection, String sql, Map<Integer, Object> parameters)
+            throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                if (parameter.getValue() == null)
+                    statement.setNull(parameter.getKey(), Types.NULL);
+                else
+                    statement.setObject(parameter.getKey(), parameter.getValue());
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                if ("H2".equalsIgnoreCase(product))
+                    return parseH2(sql, rs);
+                if ("PostgreSQL".equalsIgnoreCase(product))
+                    return parsePostgreSql(sql, rs);
+                if ("MySQL".equalsIgnoreCase(product) || "MariaDB".equalsIgnoreCase(product))
+                    return parseMySql(sql, rs);
+            }
+        }
+        throw new SQLFeatureNotSupportedException("EXPLAIN is not supported for " + product);
+    }
+
+    private static ExplainPlan parseH2(String sql, ResultSet rs) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        List<ExplainPlan.Step> steps = new ArrayList<>();
+        while (rs.next()) {
+            String plan = rs.getString(1);
+            lines.add(plan);
+            Matcher matcher = H2_TABLE_ACCESS.matcher(plan);
+            while (matcher.find()) {
+                String table = simpleName(matcher.group(1));
+                String access = matcher.group(2);
+                int colon = access.indexOf(':');
+                String path = colon >= 0 ? access.substring(0, colon).trim() : access;
+                if (path.endsWith("tableScan")) {
+                    steps.add(new ExplainPlan.Step(table, ExplainPlan.Access.FULL_SCAN, null));
+                } else if (path.equals("function") || path.startsWith("direct lookup")) {
+                    steps.add(new ExplainPlan.Step(table, ExplainPlan.Access.OTHER, null));
+                } else {
+                    steps.add(new ExplainPlan.Step(table, ExplainPlan.Access.INDEX, simpleName(path)));
+                }
+            }
+        }
+        return new ExplainPlan("H2", sql, lines, steps);
+    }
+
+    private static ExplainPlan parsePostgreSql(String sql, ResultSet rs) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        List<ExplainPlan.Step> steps = new ArrayList<>();
+        while (rs.next()) {
+            String line = rs.getString(1);
+            lines.add(line);
+            Matcher matcher;
+            if ((matcher = PG_INDEX_SCAN.matcher(line)).find()) {
+                steps.add(new ExplainPlan.Step(simpleName(matcher.group(2)), ExplainPlan.Access.INDEX,
+                        simpleName(matcher.group(1))));
+            } else if ((matcher = PG_SEQ_SCAN.matcher(line)).find()) {
+                steps.add(new ExplainPlan.Step(simpleName(matcher.group(1)), ExplainPlan.Access.FULL_SCAN, null));
+            } else if ((matcher = PG_BITMAP_HEAP_SCAN.matcher(line)).find()) {
+                steps.add(new ExplainPlan.Step(simpleName(matcher.group(1)), ExplainPlan.Access.INDEX, null));
+            } else if ((matcher = PG_BITMAP_INDEX_SCAN.matcher(line)).find()) {
+                steps.add(new ExplainPlan.Step(null, ExplainPlan.Access.INDEX, simpleName(matcher.group(1))));
+            }
+        }
+        return new ExplainPlan("PostgreSQL", sql, lines, steps);
+    }
+
+    /**
+     * One row per table; access type {@code ALL} is a full table scan.
+     */
+    private static ExplainPlan parseMySql(String sql, ResultSet rs) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        List<ExplainPlan.Step> steps = new ArrayList<>();
+        while (rs.next()) {
+            String table = rs.getString("table");
+            String type = rs.getString("type");
+            String key = rs.getString("key");
+            lines.add("table=" + table + ", type=" + type + ", key=" + key + ", rows=" + rs.getString("rows")
+                    + ", Extra=" + rs.getString("Extra"));
+            if (table == null)
+                continue;
+            if ("ALL".equalsIgnoreCase(type)) {
+                steps.add(new ExplainPlan.Step(simpleName(table), ExplainPlan.Access.FULL_SCAN, null));
+            } else if (key != null) {
+                steps.add(new ExplainPlan.Step(simpleName(table), ExplainPlan.Access.INDEX, simpleName(key)));
+            } else {
+                steps.add(new ExplainPlan.Step(simpleName(table), ExplainPlan.Access.OTHER, null));
+            }
+        }
+        return new ExplainPlan("MySQL", sql, lines, steps);
+    }
+
+    /**
+     * Lower-cased last segment of a possibly schema-qualified, quoted name.
+     */
+    private static String simpleName(String name) {
+        String unquoted = name.replace("\"", "").replace("`", "").trim();
+        int dot = unquoted.lastIndexOf('.');
+        return (dot >= 0 ? unquoted.substring(dot + 1) : unquoted).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * DataSource instance, compared by identity, and normalized SQL.
+     */
+    private static final class PlanKey {
+        private final DataSource dataSource;
+        private final String normalizedSql;
+
+        PlanKey(DataSource dataSource, String normalizedSql) {
+            this.dataSource = dataSource;
+            this.normalizedSql = normalizedSql;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PlanKey))
+                return false;
+            PlanKey key = (PlanKey) other;
+            return dataSource == key.dataSource && normalizedSql.equals(key.normalizedSql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(dataSource) + normalizedSql.hashCode();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.querykeeper.collector;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What a test did against the database, in a form that can be stored and
+ * compared between runs: statements per type, statements per normalized SQL
+ * shape, duplicate executions, rows fetched and DB time.
+ */
+public final class QueryProfile {
+
+    static final String[] TYPES = { "SELECT", "INSERT", "UPDATE", "DELETE", "OTHER" };
+
+    private final Map<String, Long> statementsByType;
+    private final Map<String, Long> statementsByShape;
+    private final long duplicates;
+    private final long rows;
+    private final long dbNanos;
+
+    /**
+     * @param statementsByType  statements per SELECT, INSERT, UPDATE, DELETE
+     *                          and OTHER; missing types count as 0
+     * @param statementsByShape statements per normalized SQL
+     */
+    public QueryProfile(Map<String, Long> statementsByType, Map<String, Long> statementsByShape, long duplicates,
+            long rows, long dbNanos) {
+        Map<String, Long> types = new LinkedHashMap<>();
+        for (String type : TYPES) {
+            Long count = statementsByType.get(type);
+            types.put(type, count != null ? count : 0L);
+        }
+        this.statementsByType = Collections.unmodifiableMap(types);
+        this.statementsByShape = Collections.unmodifiableMap(new TreeMap<>(statementsByShape));
+        this.duplicates = duplicates;
+        this.rows = rows;
+        this.dbNanos = dbNanos;
+    }
+
+    /**
+     * Takes the profile of the queries logged so far. Internal queries count
+     * towards their type but not as a shape.
+     */
+    public static QueryProfile of(QueryKeeperContext context) {
+        QueryAggregates aggregates = context.getAggregates();
+        Map<String, Long> types = new LinkedHashMap<>();
+        for (String type : TYPES) {
+            types.put(type, aggregates.getStatementCount(type));
+        }
+        Map<String, Long> shapes = new TreeMap<>();
+        for (QueryAggregates.SqlStats stats : aggregates.getSqlStats()) {
+            if (!stats.getMetadata().isInternal())
+                shapes.merge(stats.getMetadata().getNormalizedSql(), stats.getStatements(), Long::sum);
+        }
+        return new QueryProfile(types, shapes, context.getDuplicateTracker().getTotalDuplicates(),
+                aggregates.getRowsFetched(), aggregates.getDbNanos());
+    }
+
+    /**
+     * Statements per type, in the order SELECT, INSERT, UPDATE, DELETE, OTHER.
+     */
+    public Map<String, Long> getStatementsByType() {
+        return statementsByType;
+    }
+
+    /**
+     * Statements per normalized SQL, sorted by SQL.
+     */
+    public Map<String, Long> getStatementsByShape() {
+        return statementsByShape;
+    }
+
+    /**
+     * Executions beyond the first of each distinct SQL and parameter set.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getDbNanos() {
+        return dbNanos;
+    }
+}
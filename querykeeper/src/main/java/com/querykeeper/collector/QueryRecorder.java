@@ -0,0 +1,174 @@
+package com.querykeeper.collector;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.querykeeper.runtime.RuntimeQueryScope;
+
+/**
+ * Turns a finished JDBC round trip into a {@link QueryLog} on the current
+ * {@link QueryKeeperContext}. Shared by the logging statement wrappers.
+ *
+ * When a {@link RuntimeQueryScope} is bound, its counters are updated as well.
+ * Outside of tests the {@code QueryLog} may be skipped entirely (see
+ * {@link QueryKeeperContext#setCaptureUnscoped(boolean)}), in which case
+ * {@code null} is returned.
+ *
+ * When the current context tracks allocations, everything the wrappers
+ * allocate on their own behalf (wrapper objects, parameter copies, batch rows,
+ * result set bookkeeping, connection and transaction tracking and the
+ * {@code QueryLog} itself) is measured with
+ * {@link #allocationMark()} and {@link #attributeOverhead(long)} and excluded
+ * from the test's allocations.
+ */
+final class QueryRecorder {
+
+    private static final List<Map<Integer, Object>> NO_BATCH = Collections.emptyList();
+
+    private QueryRecorder() {
+    }
+
+    /**
+     * Called right before a statement is sent; returns the start timestamp.
+     *
+     * @throws SQLException if the bound runtime scope rejects the statement
+     */
+    static long start() throws SQLException {
+        RuntimeQueryScope scope = RuntimeQueryScope.current();
+        if (scope != null)
+            scope.beforeExecute();
+        return System.nanoTime();
+    }
+
+    static QueryLog record(ConnectionState connection, String sql, ParameterBuffer parameters, long startNanos) {
+        long durationNanos = System.nanoTime() - startNanos;
+        if (!observe(1, durationNanos))
+            return null;
+        long allocated = allocationMark();
+        QueryLog log = log(connection, sql, parameters.snapshot(), NO_BATCH, durationNanos, false);
+        attributeOverhead(allocated);
+        return log;
+    }
+
+    static QueryLog record(ConnectionState connection, String sql, Map<Integer, Object> parameters, long startNanos) {
+        long durationNanos = System.nanoTime() - startNanos;
+        if (!observe(1, durationNanos))
+            return null;
+        long allocated = allocationMark();
+        QueryLog log = log(connection, sql, parameters, NO_BATCH, durationNanos, false);
+        attributeOverhead(allocated);
+        return log;
+    }
+
+    static QueryLog recordBatch(ConnectionState connection, String sql, List<Map<Integer, Object>> rows, long startNanos) {
+        long durationNanos = System.nanoTime() - startNanos;
+        if (!observe(rows.size(), durationNanos))
+            return null;
+        long allocated = allocationMark();
+        QueryLog log = log(connection, sql, ParameterSnapshot.empty(), rows, durationNanos, false);
+        attributeOverhead(allocated);
+        return log;
+    }
+
+    /**
+     * Records a plain {@code Statement} batch, which may mix different SQL
+     * strings. Each distinct SQL is logged as one batch entry and the round-trip
+     * time is split evenly between them; all entries after the first are marked
+     * as {@linkplain QueryLog#isSharedRoundTrip() sharing its round trip}, so the
+     * call still counts as one execution.
+     */
+    static void recordStatementBatch(ConnectionState connection, List<String> sqls, long startNanos) {
+        long durationNanos = System.nanoTime() - startNanos;
+        if (!observe(sqls.size(), durationNanos))
+            return;
+
+        long allocated = allocationMark();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String sql : sqls) {
+            counts.merge(sql, 1, Integer::sum);
+        }
+
+        long shareNanos = durationNanos / counts.size();
+        boolean shared = false;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            List<Map<Integer, Object>> rows = new ArrayList<>(
+                    Collections.<Map<Integer, Object>>nCopies(entry.getValue(), ParameterSnapshot.empty()));
+            log(connection, entry.getKey(), ParameterSnapshot.empty(), rows, shareNanos, shared);
+            shared = true;
+        }
+        attributeOverhead(allocated);
+    }
+
+    /**
+     * Records the time spent obtaining a connection from the wrapped
+     * DataSource and returns the lease to release on {@code close()}, or
+     * {@code null} when nothing is captured.
+     */
+    static ConnectionTracker.Lease recordConnection(String dataSource, long startNanos) {
+        long durationNanos = System.nanoTime() - startNanos;
+        if (!QueryKeeperContext.isCapturing())
+            return null;
+        long allocated = allocationMark();
+        ConnectionTracker.Lease lease = QueryKeeperContext.getCurrent().getAggregates()
+                .recordConnection(dataSource, durationNanos);
+        attributeOverhead(allocated);
+        return lease;
+    }
+
+    private static QueryLog log(ConnectionState connection, String sql, Map<Integer, Object> parameters,
+            List<Map<Integer, Object>> batchRows, long durationNanos, boolean sharedRoundTrip) {
+        TransactionTracker.Transaction transaction = connection.transactionForStatement();
+        QueryLog log = new QueryLog(sql, parameters, batchRows, durationNanos, CallSiteCapture.capture(sql),
+                connection.getDataSourceName(),
+                transaction != null ? transaction.getId() : TransactionTracker.AUTO_COMMIT, connection.getOrigin(),
+                sharedRoundTrip);
+        QueryKeeperContext context = QueryKeeperContext.getCurrent();
+        context.log(log);
+        context.getAggregates().getTransactionTracker().record(transaction, log);
+        return log;
+    }
+
+    /**
+     * Reads the thread allocation counter if the current context attributes
+     * allocations, otherwise returns -1.
+     */
+    static long allocationMark() {
+        return QueryKeeperContext.getCurrent().isTrackingAllocations()
+                ? AllocationMeter.currentThreadAllocatedBytes()
+                : -1;
+    }
+
+    /**
+     * Counts what the thread allocated since {@code allocationMark} as
+     * QueryKeeper overhead. Does nothing for a mark of -1.
+     */
+    static void attributeOverhead(long allocationMark) {
+        if (allocationMark >= 0)
+            QueryKeeperContext.getCurrent().getAggregates()
+                    .addOverheadBytes(AllocationMeter.currentThreadAllocatedBytes() - allocationMark);
+    }
+
+    /**
+     * Same as {@link #attributeOverhead(long)}, returning {@code wrapper} so that
+     * a wrapper can be created and excluded in one expression.
+     */
+    static <T> T attributeOverhead(long allocationMark, T wrapper) {
+        attributeOverhead(allocationMark);
+        return wrapper;
+    }
+
+    /**
+     * Updates the runtime scope, if any, and tells whether a {@code QueryLog}
+     * should be kept.
+     */
+    private static boolean observe(int statements, long durationNanos) {
+        RuntimeQueryScope scope = RuntimeQueryScope.current();
+        if (scope != null)
+            scope.afterExecute(statements, durationNanos);
+        return QueryKeeperContext.isCapturing();
+    }
+}
@@ -0,0 +1,126 @@
+package com.querykeeper.collector;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of the query counters of a context. Statement counts
+ * include every statement of a batch.
+ */
+public final class QueryStatistics {
+
+    private final long selects;
+    private final long inserts;
+    private final long updates;
+    private final long deletes;
+    private final long others;
+    private final long executions;
+    private final long dbNanos;
+    private final long fetchNanos;
+    private final long connections;
+    private final long connectionNanos;
+    private final Map<String, Long> statementsByTable;
+    private final Map<String, Long> statementsByDataSource;
+
+    QueryStatistics(long selects, long inserts, long updates, long deletes, long others, long executions,
+            long dbNanos, long fetchNanos, long connections, long connectionNanos, Map<String, Long> statementsByTable,
+            Map<String, Long> statementsByDataSource) {
+        this.selects = selects;
+        this.inserts = inserts;
+        this.updates = updates;
+        this.deletes = deletes;
+        this.others = others;
+        this.executions = executions;
+        this.dbNanos = dbNanos;
+        this.fetchNanos = fetchNanos;
+        this.connections = connections;
+        this.connectionNanos = connectionNanos;
+        this.statementsByTable = statementsByTable;
+        this.statementsByDataSource = statementsByDataSource;
+    }
+
+    public long getSelects() {
+        return selects;
+    }
+
+    public long getInserts() {
+        return inserts;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public long getDeletes() {
+        return deletes;
+    }
+
+    public long getOthers() {
+        return others;
+    }
+
+    public long getStatements() {
+        return selects + inserts + updates + deletes + others;
+    }
+
+    /**
+     * Round trips to the database; a batch counts once.
+     */
+    public long getExecutions() {
+        return executions;
+    }
+
+    /**
+     * Total time spent inside JDBC execute calls.
+     */
+    public long getDbNanos() {
+        return dbNanos;
+    }
+
+    public long getDbMs() {
+        return TimeUnit.NANOSECONDS.toMillis(dbNanos);
+    }
+
+    /**
+     * Time spent inside {@code ResultSet.next()}.
+     */
+    public long getFetchNanos() {
+        return fetchNanos;
+    }
+
+    /**
+     * Connections obtained from a {@code LoggingDataSource}.
+     */
+    public long getConnections() {
+        return connections;
+    }
+
+    /**
+     * Time spent waiting for {@code DataSource.getConnection()}.
+     */
+    public long getConnectionNanos() {
+        return connectionNanos;
+    }
+
+    /**
+     * Execute, fetch and connection acquisition time together: everything spent
+     * waiting on the database or the pool.
+     */
+    public long getTotalDbNanos() {
+        return dbNanos + fetchNanos + connectionNanos;
+    }
+
+    /**
+     * Statements per referenced table, sorted by table name.
+     */
+    public Map<String, Long> getStatementsByTable() {
+        return statementsByTable;
+    }
+
+    /**
+     * Statements per DataSource name, sorted by name.
+     */
+    public Map<String, Long> getStatementsByDataSource() {
+        return statementsByDataSource;
+    }
+}
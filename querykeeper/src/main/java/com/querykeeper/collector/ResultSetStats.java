@@ -0,0 +1,168 @@
+package com.querykeeper.collector;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumption statistics of the result set(s) returned by one query: rows
+ * fetched through {@code next()}, time spent inside {@code next()}, column
+ * count and an approximation of the bytes read through the typed getters.
+ *
+ * Updated by the thread iterating the result set and read after the test.
+ * Every fetch is also forwarded to the per-SQL totals of the owning context.
+ *
+ * When allocations are tracked, a row's hydration is what the thread allocated
+ * between its {@code next()} and the following one, minus what was attributed
+ * in the meantime: QueryKeeper overhead and the hydration of result sets read
+ * while processing the row. Nested queries are therefore counted once, under
+ * the innermost result set. The bookkeeping of each fetch is overhead.
+ */
+public final class ResultSetStats {
+
+    private final QueryAggregates.SqlStats sink;
+    private final String caller;
+    private final QueryAggregates allocations;
+    private long forwardedBytes;
+    private long allocationMark = -1;
+    private long attributedMark;
+    private long hydrationBytes;
+
+    private long rows;
+    private long fetchNanos;
+    private int columnCount = -1;
+    private long approximateBytes;
+
+    /**
+     * @param allocations aggregates that receive the overhead and hydration of
+     *                    this result set, or {@code null} if allocations are
+     *                    not tracked
+     */
+    ResultSetStats(QueryAggregates.SqlStats sink, String caller, QueryAggregates allocations) {
+        this.sink = sink;
+        this.caller = caller;
+        this.allocations = allocations;
+    }
+
+    void addFetch(boolean hasRow, long nanos) {
+        long allocated = allocations != null ? endHydration() : -1;
+        fetchNanos += nanos;
+        if (hasRow)
+            rows++;
+        if (sink != null) {
+            sink.addFetch(hasRow, rows, nanos, approximateBytes - forwardedBytes, caller);
+            forwardedBytes = approximateBytes;
+        }
+        if (allocated >= 0)
+            startHydration(hasRow, allocated);
+    }
+
+    /**
+     * Forwards the bytes read from the last row, which are otherwise only
+     * forwarded by the following {@code next()}, for example when the result
+     * set is closed before it is exhausted.
+     */
+    void close() {
+        long allocated = allocationMark >= 0 ? endHydration() : -1;
+        if (sink != null && approximateBytes > forwardedBytes) {
+            sink.addFetch(false, rows, 0, approximateBytes - forwardedBytes, caller);
+            forwardedBytes = approximateBytes;
+        }
+        if (allocated >= 0)
+            startHydration(false, allocated);
+    }
+
+    /**
+     * Counts what the thread allocated since the previous row was fetched,
+     * less what was attributed meanwhile, as hydration of that row. Returns the
+     * counter reading.
+     */
+    private long endHydration() {
+        long allocated = AllocationMeter.currentThreadAllocatedBytes();
+        if (allocationMark >= 0) {
+            long bytes = Math.max(0,
+                    allocated - allocationMark - (allocations.getAttributedBytes() - attributedMark));
+            hydrationBytes += bytes;
+            if (sink != null)
+                sink.addHydration(bytes);
+            allocationMark = -1;
+        }
+        return allocated;
+    }
+
+    /**
+     * Counts the bookkeeping since {@code allocated} as overhead and, if a row
+     * was fetched, starts measuring its hydration.
+     */
+    private void startHydration(boolean hasRow, long allocated) {
+        long now = AllocationMeter.currentThreadAllocatedBytes();
+        allocations.addOverheadBytes(now - allocated);
+        if (hasRow) {
+            allocationMark = now;
+            attributedMark = allocations.getAttributedBytes();
+        }
+    }
+
+    void addBytes(long bytes) {
+        approximateBytes += bytes;
+    }
+
+    boolean hasColumnCount() {
+        return columnCount >= 0;
+    }
+
+    void setColumnCount(int columnCount) {
+        this.columnCount = columnCount;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getFetchNanos() {
+        return fetchNanos;
+    }
+
+    public long getFetchMs() {
+        return TimeUnit.NANOSECONDS.toMillis(fetchNanos);
+    }
+
+    /**
+     * Number of columns, or -1 if the result set was never advanced.
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public long getApproximateBytes() {
+        return approximateBytes;
+    }
+
+    /**
+     * Bytes allocated while the rows were processed, or -1 if allocations were
+     * not tracked for this query.
+     */
+    public long getHydrationBytes() {
+        return allocations != null ? hydrationBytes : -1;
+    }
+
+    static long estimateBytes(Object value) {
+        if (value == null)
+            return 0;
+        if (value instanceof String)
+            return 2L * ((String) value).length();
+        if (value instanceof byte[])
+            return ((byte[]) value).length;
+        if (value instanceof Long || value instanceof Double || value instanceof java.util.Date)
+            return 8;
+        if (value instanceof Integer || value instanceof Float)
+            return 4;
+        if (value instanceof Short)
+            return 2;
+        if (value instanceof Byte || value instanceof Boolean)
+            return 1;
+        // precision() rather than unscaledValue(), which allocates a BigInteger
+        if (value instanceof BigDecimal)
+            return 8 + ((BigDecimal) value).precision() * 10L / 3 / 8;
+        return 16;
+    }
+}
@@ -0,0 +1,173 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Facts about a SQL string that do not depend on its parameters: statement
+ * type, normalized text, whether it is an ORM/driver internal query and the
+ * tables it references.
+ *
+ * ORMs issue a small, fixed set of SQL strings, so metadata is computed once
+ * per distinct string and kept in a bounded cache.
+ */
+public final class SqlMetadata {
+
+    private static final int MAX_CACHED_STATEMENTS = 2048;
+
+    private static final ConcurrentHashMap<String, SqlMetadata> CACHE = new ConcurrentHashMap<>();
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w$])\\d+(?:\\.\\d+)?(?![\\w$])");
+    private static final Pattern IN_LIST = Pattern.compile("\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+    private static final Pattern TABLE_REFERENCE = Pattern
+            .compile("\\b(?:from|join|update|into)\\s+([\\w$.`\"\\[\\]]+)");
+
+    /**
+     * Sequence, identity, health check and catalog queries issued by ORMs,
+     * drivers and connection pools, matched against the normalized text.
+     */
+    private static final Pattern INTERNAL_QUERY = Pattern.compile("^(?:"
+            + "select\\s+next\\s+value\\s+for"
+            + "|call\\s+next\\s+value\\s+for"
+            + "|select\\s+currval"
+            + "|select\\s+last_insert_id"
+            + "|call\\s+identity"
+            + "|select\\s+@@identity"
+            + "|select\\s+1(\\s+from.*)?$"
+            + "|select\\s+current_\\w+"
+            + "|select\\s+hibernate_sequence\\.nextval"
+            + "|pragma\\s+table_info"
+            + "|show\\s+create\\s+table"
+            + "|select\\s+(nextval|currval)\\s*\\(?['\"]?\\w+['\"]?\\)?"
+            + "|select\\s+.*from\\s+(information_schema|all_tab_columns|user_sequences)"
+            + "|select\\s+\\*\\s+from\\s+dual"
+            + "|select\\s+sysdate\\s+from\\s+dual"
+            + "|select\\s+user\\s+from\\s+dual"
+            + "|select\\s+@@session\\.\\w+"
+            + "|select\\s+pg_catalog\\."
+            + "|select\\s+pg_get_serial_sequence"
+            + "|select\\s+sequence_name\\s+from\\s+all_sequences"
+            + "|select\\s+constraint_name\\s+from\\s+user_constraints"
+            + "|select\\s+version\\(\\)"
+            + "|select\\s+@@autocommit"
+            + "|select\\s+database\\(\\)"
+            + ")", Pattern.CASE_INSENSITIVE);
+
+    private final String type;
+    private final String normalizedSql;
+    private final boolean internal;
+    private final List<String> tables;
+    private final long sqlHash;
+    private volatile String shape;
+
+    private SqlMetadata(String sql) {
+        this.sqlHash = Fingerprints.hashSql(sql);
+        this.normalizedSql = WHITESPACE.matcher(sql.trim().toLowerCase(Locale.ROOT)).replaceAll(" ");
+        this.type = detectType(normalizedSql);
+        this.internal = INTERNAL_QUERY.matcher(normalizedSql).find();
+        this.tables = extractTables(normalizedSql);
+    }
+
+    public static SqlMetadata of(String sql) {
+        SqlMetadata cached = CACHE.get(sql);
+        if (cached != null)
+            return cached;
+
+        SqlMetadata created = new SqlMetadata(sql);
+        if (CACHE.size() >= MAX_CACHED_STATEMENTS)
+            CACHE.clear();
+        CACHE.put(sql, created);
+        return created;
+    }
+
+    /**
+     * SELECT, INSERT, UPDATE, DELETE or OTHER.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Lower-cased, trimmed text with whitespace runs collapsed to one space.
+     */
+    public String getNormalizedSql() {
+        return normalizedSql;
+    }
+
+    /**
+     * Normalized text with string and number literals replaced by {@code ?} and
+     * IN lists collapsed to {@code in (?)}, so that statements built with
+     * inlined values, or with IN lists of different lengths, share one shape.
+     * Computed on first use.
+     */
+    public String getShape() {
+        String result = shape;
+        if (result == null) {
+            result = STRING_LITERAL.matcher(normalizedSql).replaceAll("?");
+            result = NUMBER_LITERAL.matcher(result).replaceAll("?");
+            result = IN_LIST.matcher(result).replaceAll("in (?)");
+            shape = result;
+        }
+        return result;
+    }
+
+    /**
+     * Whether the statement is a sequence, identity or catalog query that should
+     * not count as a duplicate.
+     */
+    public boolean isInternal() {
+        return internal;
+    }
+
+    /**
+     * Lower-cased table names referenced after FROM, JOIN, UPDATE or INTO, in
+     * order of first appearance.
+     */
+    public List<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * 64-bit hash of the exact SQL text, used as the statement id in fingerprint
+     * hashes.
+     */
+    public long getSqlHash() {
+        return sqlHash;
+    }
+
+    private static String detectType(String normalized) {
+        if (normalized.startsWith("select"))
+            return "SELECT";
+        if (normalized.startsWith("insert"))
+            return "INSERT";
+        if (normalized.startsWith("update"))
+            return "UPDATE";
+        if (normalized.startsWith("delete"))
+            return "DELETE";
+        return "OTHER";
+    }
+
+    private static List<String> extractTables(String normalized) {
+        Set<String> found = new LinkedHashSet<>();
+        Matcher matcher = TABLE_REFERENCE.matcher(normalized);
+        while (matcher.find()) {
+            String table = matcher.group(1).replace("`", "").replace("\"", "").replace("[", "").replace("]", "");
+            if (!table.isEmpty())
+                found.add(table);
+        }
+        if (found.isEmpty())
+            return Collections.emptyList();
+        return Collections.unmodifiableList(new ArrayList<>(found));
+    }
+}
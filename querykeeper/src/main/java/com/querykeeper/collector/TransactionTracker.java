@@ -0,0 +1,130 @@
+package com.querykeeper.collector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transactions in which the queries of one context ran, and the execute calls
+ * made in auto-commit mode (each its own implicit transaction, however many
+ * statements a batch sends).
+ *
+ * A transaction is registered with the first of its queries captured by the
+ * context, so one that started before the context was opened, such as a
+ * Spring test transaction, is reported too.
+ */
+public final class TransactionTracker {
+
+    /**
+     * {@link QueryLog#transactionId} of statements run in auto-commit mode.
+     */
+    public static final long AUTO_COMMIT = 0;
+
+    private static final AtomicLong IDS = new AtomicLong();
+
+    public enum Outcome {
+        OPEN, COMMIT, ROLLBACK, CLOSED
+    }
+
+    private final ConcurrentHashMap<Long, Transaction> transactions = new ConcurrentHashMap<>();
+    private final LongAdder autoCommitTransactions = new LongAdder();
+
+    static Transaction begin(String dataSource) {
+        return new Transaction(IDS.incrementAndGet(), dataSource, CallSiteCapture.capture(null));
+    }
+
+    /**
+     * Counts {@code log} towards its transaction. A log that shares the round
+     * trip of the one before it belongs to the same auto-commit execution.
+     */
+    void record(Transaction transaction, QueryLog log) {
+        if (transaction == null) {
+            if (!log.isSharedRoundTrip())
+                autoCommitTransactions.increment();
+            return;
+        }
+        transaction.statements.add(log.getStatementCount());
+        if (!transactions.containsKey(transaction.id))
+            transactions.putIfAbsent(transaction.id, transaction);
+    }
+
+    /**
+     * Transactions with at least one captured query, in order of start.
+     */
+    public List<Transaction> getTransactions() {
+        List<Transaction> result = new ArrayList<>(transactions.values());
+        result.sort(Comparator.comparingLong(Transaction::getId));
+        return result;
+    }
+
+    /**
+     * Execute calls made in auto-commit mode; a batch counts once.
+     */
+    public long getAutoCommitTransactions() {
+        return autoCommitTransactions.sum();
+    }
+
+    /**
+     * Explicit plus auto-commit transactions.
+     */
+    public long getTotal() {
+        return transactions.size() + autoCommitTransactions.sum();
+    }
+
+    public static final class Transaction {
+        private final long id;
+        private final String dataSource;
+        private final String caller;
+        private final long startedAt = System.nanoTime();
+        private final LongAdder statements = new LongAdder();
+        private volatile long durationNanos = -1;
+        private volatile Outcome outcome = Outcome.OPEN;
+
+        Transaction(long id, String dataSource, String caller) {
+            this.id = id;
+            this.dataSource = dataSource;
+            this.caller = caller;
+        }
+
+        void end(Outcome result) {
+            if (outcome != Outcome.OPEN)
+                return;
+            durationNanos = System.nanoTime() - startedAt;
+            outcome = result;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getDataSource() {
+            return dataSource;
+        }
+
+        /**
+         * Application frame that started the transaction.
+         */
+        public String getCaller() {
+            return caller;
+        }
+
+        public long getStatements() {
+            return statements.sum();
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * Time from start to end, measured up to now while still open.
+         */
+        public long getDurationNanos() {
+            long duration = durationNanos;
+            return duration >= 0 ? duration : System.nanoTime() - startedAt;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import com.querykeeper.annotation.ExpectAllocation;
+import com.querykeeper.collector.QueryAggregates;
+import com.querykeeper.collector.QueryKeeperContext;
+
+public class AllocationAssertionEngine {
+
+    private static final int MAX_LISTED_QUERIES = 10;
+
+    /**
+     * @param allocatedBytes bytes allocated by the test thread during the test,
+     *                       or a negative value if they could not be measured
+     */
+    public static void assertAllocation(Method method, ExpectAllocation expectation, long allocatedBytes,
+            List<String> finalLog, List<Throwable> finalFailures) {
+        String methodName = method.getName();
+
+        if (allocatedBytes < 0) {
+            finalLog.add("[QueryKeeper] ▶ ExpectAllocation (!) SKIPPED - " + methodName
+                    + ", thread allocation counters are not available on this JVM");
+            return;
+        }
+
+        QueryAggregates aggregates = QueryKeeperContext.getCurrent().getAggregates();
+        long overhead = aggregates.getOverheadBytes();
+        long allocated = Math.max(0, allocatedBytes - overhead);
+
+        StringBuilder details = new StringBuilder();
+        details.append("\n  • QueryKeeper overhead (excluded): ").append(formatBytes(overhead));
+        details.append("\n  • Hydration: ").append(formatBytes(aggregates.getHydrationBytes()));
+        List<QueryAggregates.SqlStats> hydrating = aggregates.getSqlStats().stream()
+                .filter(stats -> stats.getHydrationBytes() > 0)
+                .sorted(Comparator.comparingLong(QueryAggregates.SqlStats::getHydrationBytes).reversed())
+                .limit(MAX_LISTED_QUERIES)
+                .collect(Collectors.toList());
+        for (QueryAggregates.SqlStats stats : hydrating) {
+            details.append("\n  • [").append(formatBytes(stats.getHydrationBytes())).append(", ")
+                    .append(stats.getRows()).append(" rows] → ").append(stats.getSql());
+        }
+
+        String summary = methodName + " allocated " + formatBytes(allocated);
+
+        if (expectation.value() == 0) {
+            finalLog.add("[QueryKeeper] ▶ ExpectAllocation (!) SKIPPED - " + summary + " (no threshold set)"
+                    + details);
+            return;
+        }
+
+        String expected = " (expected <= " + formatBytes(expectation.value()) + ")";
+        if (allocated > expectation.value()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectAllocation X FAILED - " + summary + expected + details);
+            finalFailures.add(new AssertionError("Allocation exceeded: " + allocated + " bytes > "
+                    + expectation.value() + " bytes"));
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectAllocation ✓ PASSED - " + summary + expected + details);
+        }
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024)
+            return bytes + " B";
+        if (bytes < 1024 * 1024)
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
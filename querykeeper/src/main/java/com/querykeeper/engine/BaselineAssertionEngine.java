@@ -0,0 +1,120 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.querykeeper.annotation.ExpectBaseline;
+import com.querykeeper.collector.LatencyHistogram;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.collector.QueryProfile;
+
+public class BaselineAssertionEngine {
+
+    /**
+     * {@code auto} (default) records missing baselines and verifies the others,
+     * {@code update} re-records every test and {@code verify} fails on missing
+     * baselines without writing.
+     */
+    public static final String MODE_PROPERTY = "querykeeper.baseline.mode";
+
+    public static void assertBaseline(Method method, Class<?> testClass, String testName, ExpectBaseline expectation,
+            List<String> finalLog, List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        String mode = System.getProperty(MODE_PROPERTY, "auto").trim().toLowerCase(Locale.ROOT);
+        BaselineFile file = BaselineFile.forClass(testClass);
+        String key = BaselineFile.key(testName);
+        QueryProfile actual = QueryProfile.of(QueryKeeperContext.getCurrent());
+        QueryProfile baseline = file.get(key);
+
+        if (mode.equals("update") || (baseline == null && !mode.equals("verify"))) {
+            if (mode.equals("update"))
+                file.replace(key, actual);
+            else
+                file.append(key, actual);
+            finalLog.add("[QueryKeeper] ▶ ExpectBaseline ✓ PASSED - " + methodName + ", Baseline "
+                    + (baseline == null ? "recorded" : "updated") + " in " + file.getPath() + describe(actual));
+            return;
+        }
+        if (baseline == null) {
+            finalLog.add("[QueryKeeper] ▶ ExpectBaseline X FAILED - " + methodName + ", No baseline in "
+                    + file.getPath());
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ No baseline recorded for " + testName + " in "
+                    + file.getPath() + " (" + MODE_PROPERTY + "=verify)"));
+            return;
+        }
+
+        List<String> regressions = new ArrayList<>();
+        List<String> improvements = new ArrayList<>();
+        int tolerance = expectation.queryTolerance();
+
+        for (Map.Entry<String, Long> type : actual.getStatementsByType().entrySet()) {
+            long expected = baseline.getStatementsByType().get(type.getKey());
+            compare(type.getKey(), type.getValue(), expected, expected + tolerance, regressions, improvements);
+        }
+        for (Map.Entry<String, Long> shape : actual.getStatementsByShape().entrySet()) {
+            Long expected = baseline.getStatementsByShape().get(shape.getKey());
+            if (expected == null) {
+                if (!expectation.allowNewShapes())
+                    regressions.add("New SQL (" + shape.getValue() + "x) → " + shape.getKey());
+            } else if (shape.getValue() > expected + tolerance) {
+                regressions.add("SQL executed " + shape.getValue() + "x (baseline " + expected + "x) → "
+                        + shape.getKey());
+            }
+        }
+        for (String shape : baseline.getStatementsByShape().keySet()) {
+            if (!actual.getStatementsByShape().containsKey(shape))
+                improvements.add("SQL no longer executed → " + shape);
+        }
+        compare("Duplicates", actual.getDuplicates(), baseline.getDuplicates(),
+                baseline.getDuplicates() + expectation.duplicateTolerance(), regressions, improvements);
+        compare("Rows", actual.getRows(), baseline.getRows(),
+                (long) Math.floor(baseline.getRows() * (1 + expectation.rowTolerance())), regressions, improvements);
+        if (expectation.dbTimeTolerance() >= 0
+                && actual.getDbNanos() > baseline.getDbNanos() * (1 + expectation.dbTimeTolerance())) {
+            regressions.add("DB time: " + formatMs(actual.getDbNanos()) + " (baseline "
+                    + formatMs(baseline.getDbNanos()) + ", tolerance +"
+                    + Math.round(expectation.dbTimeTolerance() * 100) + "%)");
+        }
+
+        StringBuilder details = new StringBuilder();
+        for (String regression : regressions) {
+            details.append("\n  • ").append(regression);
+        }
+        for (String improvement : improvements) {
+            details.append("\n  • (improved) ").append(improvement);
+        }
+        if (!improvements.isEmpty()) {
+            details.append("\n  • Run with -D").append(MODE_PROPERTY).append("=update to tighten the baseline");
+        }
+
+        if (regressions.isEmpty()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectBaseline ✓ PASSED - " + methodName + describe(actual) + details);
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectBaseline X FAILED - " + methodName + describe(actual) + details);
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ " + regressions.size()
+                    + " regression(s) against the baseline of " + testName + " in " + file.getPath()));
+        }
+    }
+
+    private static void compare(String label, long actual, long baseline, long limit, List<String> regressions,
+            List<String> improvements) {
+        if (actual > limit) {
+            regressions.add(label + ": " + actual + " (baseline " + baseline + ", allowed " + limit + ")");
+        } else if (actual < baseline) {
+            improvements.add(label + ": " + actual + " (baseline " + baseline + ")");
+        }
+    }
+
+    private static String describe(QueryProfile profile) {
+        return " (" + profile.getStatementsByType() + ", shapes: " + profile.getStatementsByShape().size()
+                + ", duplicates: " + profile.getDuplicates() + ", rows: " + profile.getRows() + ", DB time: "
+                + formatMs(profile.getDbNanos()) + ")";
+    }
+
+    private static String formatMs(long nanos) {
+        return String.format(Locale.ROOT, "%.3fms", LatencyHistogram.toMs(nanos));
+    }
+}
@@ -0,0 +1,176 @@
+package com.querykeeper.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.querykeeper.collector.QueryProfile;
+
+/**
+ * Baseline file of one test class: a line-oriented log of query profiles,
+ * appended to as new tests are recorded. Re-recording rewrites the file with
+ * one entry per test, sorted by test name, so it does not grow across updates.
+ *
+ * <pre>
+ * test    &lt;test&gt;    SELECT=1    INSERT=1    UPDATE=0    DELETE=0    OTHER=0    duplicates=0    rows=3    dbNanos=812345
+ * shape   &lt;statements&gt;    &lt;normalized sql&gt;
+ * end
+ * </pre>
+ *
+ * Fields are tab separated. An entry only counts once its {@code end} line is
+ * written, and a later entry of the same test replaces an earlier one. Files
+ * are read once per run and kept in memory.
+ */
+final class BaselineFile {
+
+    static final String DIRECTORY_PROPERTY = "querykeeper.baseline.dir";
+    static final String DEFAULT_DIRECTORY = "src/test/resources/querykeeper-baselines";
+
+    private static final String HEADER = "# QueryKeeper baseline: appended by @ExpectBaseline, the last entry of a test wins\n";
+
+    private static final ConcurrentHashMap<Path, BaselineFile> FILES = new ConcurrentHashMap<>();
+
+    private final Path path;
+    private final Map<String, QueryProfile> profiles;
+
+    private BaselineFile(Path path, Map<String, QueryProfile> profiles) {
+        this.path = path;
+        this.profiles = profiles;
+    }
+
+    static BaselineFile forClass(Class<?> testClass) {
+        Path path = Paths.get(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY),
+                testClass.getName() + ".baseline");
+        return FILES.computeIfAbsent(path.toAbsolutePath(), p -> new BaselineFile(p, read(p)));
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    synchronized QueryProfile get(String test) {
+        return profiles.get(test);
+    }
+
+    /**
+     * Appends an entry for {@code test} with a single write.
+     */
+    synchronized void append(String test, QueryProfile profile) {
+        StringBuilder sb = new StringBuilder();
+        format(sb, test, profile);
+
+        try {
+            Files.createDirectories(path.getParent());
+            if (!Files.exists(path))
+                sb.insert(0, HEADER);
+            Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write QueryKeeper baseline " + path, e);
+        }
+        profiles.put(test, profile);
+    }
+
+    /**
+     * Replaces the entry of {@code test} and rewrites the file with the latest
+     * entry of every test, through a temporary file moved over the old one.
+     */
+    synchronized void replace(String test, QueryProfile profile) {
+        profiles.put(test, profile);
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (Map.Entry<String, QueryProfile> entry : new TreeMap<>(profiles).entrySet()) {
+            format(sb, entry.getKey(), entry.getValue());
+        }
+
+        try {
+            Files.createDirectories(path.getParent());
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temporary, sb.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write QueryKeeper baseline " + path, e);
+        }
+    }
+
+    private static void format(StringBuilder sb, String test, QueryProfile profile) {
+        sb.append("test\t").append(test);
+        for (Map.Entry<String, Long> type : profile.getStatementsByType().entrySet()) {
+            sb.append('\t').append(type.getKey()).append('=').append(type.getValue());
+        }
+        sb.append("\tduplicates=").append(profile.getDuplicates())
+                .append("\trows=").append(profile.getRows())
+                .append("\tdbNanos=").append(profile.getDbNanos()).append('\n');
+        for (Map.Entry<String, Long> shape : profile.getStatementsByShape().entrySet()) {
+            sb.append("shape\t").append(shape.getValue()).append('\t').append(shape.getKey()).append('\n');
+        }
+        sb.append("end\n");
+    }
+
+    /**
+     * Turns a test name into a single-line key.
+     */
+    static String key(String test) {
+        return test.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private static Map<String, QueryProfile> read(Path path) {
+        Map<String, QueryProfile> profiles = new HashMap<>();
+        if (!Files.exists(path))
+            return profiles;
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read QueryKeeper baseline " + path, e);
+        }
+
+        String test = null;
+        Map<String, Long> fields = null;
+        Map<String, Long> shapes = null;
+        for (String line : lines) {
+            String[] columns = line.split("\t", -1);
+            if (columns[0].equals("test") && columns.length >= 2) {
+                test = columns[1];
+                fields = new HashMap<>();
+                shapes = new LinkedHashMap<>();
+                for (int i = 2; i < columns.length; i++) {
+                    int eq = columns[i].indexOf('=');
+                    if (eq > 0)
+                        fields.put(columns[i].substring(0, eq), parseLong(columns[i].substring(eq + 1)));
+                }
+            } else if (columns[0].equals("shape") && columns.length >= 3 && test != null) {
+                shapes.merge(columns[2], parseLong(columns[1]), Long::sum);
+            } else if (columns[0].equals("end") && test != null) {
+                profiles.put(test, new QueryProfile(fields, shapes, field(fields, "duplicates"),
+                        field(fields, "rows"), field(fields, "dbNanos")));
+                test = null;
+            }
+        }
+        return profiles;
+    }
+
+    private static long field(Map<String, Long> fields, String name) {
+        Long value = fields.get(name);
+        return value != null ? value : 0;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
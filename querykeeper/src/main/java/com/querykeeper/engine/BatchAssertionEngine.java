@@ -0,0 +1,67 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.querykeeper.annotation.ExpectBatch;
+import com.querykeeper.collector.QueryAggregates;
+import com.querykeeper.collector.QueryKeeperContext;
+
+public class BatchAssertionEngine {
+
+    public static void assertBatching(Method method, ExpectBatch expectation, List<String> finalLog,
+            List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        List<QueryAggregates.SqlStats> sqlStats = QueryKeeperContext.getCurrent().getAggregates().getSqlStats();
+        int minSize = Math.max(1, expectation.minSize());
+
+        long totalRoundTrips = 0;
+        List<String> details = new ArrayList<>();
+        List<String> violations = new ArrayList<>();
+
+        for (QueryAggregates.SqlStats stats : sqlStats) {
+            String type = stats.getMetadata().getType();
+            if (!type.equals("INSERT") && !type.equals("UPDATE") && !type.equals("DELETE"))
+                continue;
+
+            long statements = stats.getStatements();
+            long roundTrips = stats.getExecutions();
+            totalRoundTrips += stats.getRoundTrips();
+
+            String line = "  • [" + statements + " statements / " + roundTrips + " round trips, largest batch "
+                    + stats.getLargestBatch() + "] → " + stats.getSql();
+            details.add(line);
+
+            if (statements < minSize)
+                continue;
+
+            long allowed = (statements + minSize - 1) / minSize;
+            if (roundTrips > allowed) {
+                violations.add("[QueryKeeper] ▶ Expected batches of at least " + minSize + " for " + stats.getSql()
+                        + ", but " + statements + " statements used " + roundTrips
+                        + " round trips (allowed: " + allowed + ")");
+            }
+        }
+
+        if (expectation.maxRoundTrips() >= 0 && totalRoundTrips > expectation.maxRoundTrips()) {
+            violations.add("[QueryKeeper] ▶ Expected at most " + expectation.maxRoundTrips()
+                    + " write round trips, but found " + totalRoundTrips);
+        }
+
+        if (!violations.isEmpty()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectBatch X FAILED - " + methodName + " sent " + totalRoundTrips
+                    + " write round trips (minSize: " + minSize + ", maxRoundTrips: " + expectation.maxRoundTrips()
+                    + ")");
+            finalLog.addAll(details);
+            for (String violation : violations) {
+                finalFailures.add(new AssertionError(violation));
+            }
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectBatch ✓ PASSED - " + methodName + " sent " + totalRoundTrips
+                    + " write round trips (minSize: " + minSize + ", maxRoundTrips: " + expectation.maxRoundTrips()
+                    + ")");
+            finalLog.addAll(details);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.querykeeper.annotation.ExpectConnections;
+import com.querykeeper.collector.ConnectionTracker;
+import com.querykeeper.collector.LatencyHistogram;
+import com.querykeeper.collector.QueryKeeperContext;
+
+public class ConnectionAssertionEngine {
+
+    public static void assertConnections(Method method, ExpectConnections expectation, List<String> finalLog,
+            List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        ConnectionTracker tracker = QueryKeeperContext.getCurrent().getAggregates().getConnectionTracker();
+        List<ConnectionTracker.Lease> unclosed = tracker.getOpenLeases();
+        long maxHoldNanos = tracker.getHoldHistogram().getMaxNanos();
+        ConnectionTracker.Lease longestLease = tracker.getLongestHeld();
+        for (ConnectionTracker.Lease lease : unclosed) {
+            if (lease.getHoldNanos() > maxHoldNanos) {
+                maxHoldNanos = lease.getHoldNanos();
+                longestLease = lease;
+            }
+        }
+
+        int failuresBefore = finalFailures.size();
+        if (expectation.max() >= 0 && tracker.getPeakConcurrent() > expectation.max()) {
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ Expected at most " + expectation.max()
+                    + " concurrent connections, but held " + tracker.getPeakConcurrent()));
+        }
+        if (expectation.maxHoldMs() >= 0 && maxHoldNanos > TimeUnit.MILLISECONDS.toNanos(expectation.maxHoldMs())) {
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ Connection held for "
+                    + formatMs(maxHoldNanos) + " (expected <= " + expectation.maxHoldMs() + "ms), acquired at "
+                    + longestLease.getCaller()));
+        }
+        if (!expectation.allowUnclosed() && !unclosed.isEmpty()) {
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ " + unclosed.size()
+                    + " connection(s) not closed at the end of " + methodName));
+        }
+
+        LatencyHistogram acquisition = tracker.getAcquisitionHistogram();
+        StringBuilder summary = new StringBuilder();
+        summary.append(methodName).append(" acquired ").append(tracker.getAcquired()).append(" connection(s), peak ")
+                .append(tracker.getPeakConcurrent()).append(" concurrent, acquire p50: ")
+                .append(formatMs(acquisition.getPercentileNanos(50))).append(" max: ")
+                .append(formatMs(acquisition.getMaxNanos())).append(", longest hold: ").append(formatMs(maxHoldNanos))
+                .append(", unclosed: ").append(unclosed.size())
+                .append(" (max: ").append(expectation.max()).append(", maxHoldMs: ").append(expectation.maxHoldMs())
+                .append(")");
+        if (longestLease != null && longestLease.isReleased()) {
+            summary.append("\n  • Longest held [").append(formatMs(maxHoldNanos)).append("] → ")
+                    .append(longestLease.getDataSource()).append(" at ").append(longestLease.getCaller());
+        }
+        for (ConnectionTracker.Lease lease : unclosed) {
+            summary.append("\n  • Unclosed [held ").append(formatMs(lease.getHoldNanos())).append("] → ")
+                    .append(lease.getDataSource()).append(" at ").append(lease.getCaller())
+                    .append(" (thread ").append(lease.getThread()).append(")");
+        }
+
+        if (finalFailures.size() > failuresBefore) {
+            finalLog.add("[QueryKeeper] ▶ ExpectConnections X FAILED - " + summary);
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectConnections ✓ PASSED - " + summary);
+        }
+    }
+
+    private static String formatMs(long nanos) {
+        return String.format(Locale.ROOT, "%.3fms", LatencyHistogram.toMs(nanos));
+    }
+}
@@ -0,0 +1,80 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+
+import com.querykeeper.annotation.ExpectDbTime;
+import com.querykeeper.annotation.ExpectDbTimeRatio;
+import com.querykeeper.collector.LatencyHistogram;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.collector.QueryStatistics;
+
+public class DbTimeAssertionEngine {
+
+    public static void assertDbTime(Method method, ExpectDbTime expectation, long wallNanos,
+            List<String> finalLog, List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        QueryStatistics statistics = QueryKeeperContext.getCurrent().getStatistics();
+        double dbMs = LatencyHistogram.toMs(statistics.getTotalDbNanos());
+        String breakdown = breakdown(methodName, statistics, wallNanos);
+
+        if (expectation.value() == 0) {
+            finalLog.add("[QueryKeeper] ▶ ExpectDbTime (!) SKIPPED - " + breakdown + " (no threshold set)");
+            return;
+        }
+
+        if (dbMs > expectation.value()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectDbTime X FAILED - " + breakdown + " (expected <= "
+                    + expectation.value() + "ms)");
+            finalFailures.add(new AssertionError("DB time exceeded: " + formatMs(dbMs) + " > "
+                    + expectation.value() + "ms"));
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectDbTime ✓ PASSED - " + breakdown + " (expected <= "
+                    + expectation.value() + "ms)");
+        }
+    }
+
+    public static void assertDbTimeRatio(Method method, ExpectDbTimeRatio expectation, long wallNanos,
+            List<String> finalLog, List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        QueryStatistics statistics = QueryKeeperContext.getCurrent().getStatistics();
+        String breakdown = breakdown(methodName, statistics, wallNanos);
+
+        if (wallNanos <= 0) {
+            finalLog.add("[QueryKeeper] ▶ ExpectDbTimeRatio (!) SKIPPED - " + methodName + " was not timed");
+            return;
+        }
+
+        double ratio = statistics.getTotalDbNanos() / (double) wallNanos;
+        String expected = " (expected ratio <= " + String.format(Locale.ROOT, "%.2f", expectation.value()) + ")";
+
+        if (ratio > expectation.value()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectDbTimeRatio X FAILED - " + breakdown + expected);
+            finalFailures.add(new AssertionError("DB time ratio exceeded: "
+                    + String.format(Locale.ROOT, "%.2f > %.2f", ratio, expectation.value())));
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectDbTimeRatio ✓ PASSED - " + breakdown + expected);
+        }
+    }
+
+    private static String breakdown(String methodName, QueryStatistics statistics, long wallNanos) {
+        long dbNanos = statistics.getTotalDbNanos();
+        StringBuilder sb = new StringBuilder();
+        sb.append(methodName).append(" spent ").append(formatMs(LatencyHistogram.toMs(dbNanos)))
+                .append(" in DB (execute ").append(formatMs(LatencyHistogram.toMs(statistics.getDbNanos())))
+                .append(", fetch ").append(formatMs(LatencyHistogram.toMs(statistics.getFetchNanos())))
+                .append(", connection ").append(formatMs(LatencyHistogram.toMs(statistics.getConnectionNanos())))
+                .append(")");
+        if (wallNanos > 0) {
+            sb.append(" of ").append(formatMs(LatencyHistogram.toMs(wallNanos))).append(" wall time (")
+                    .append(String.format(Locale.ROOT, "%.0f%%", 100.0 * dbNanos / wallNanos)).append(" DB, app ")
+                    .append(formatMs(LatencyHistogram.toMs(Math.max(0, wallNanos - dbNanos)))).append(")");
+        }
+        return sb.toString();
+    }
+
+    private static String formatMs(double ms) {
+        return String.format(Locale.ROOT, "%.3fms", ms);
+    }
+}
@@ -1,41 +1,25 @@
 package com.querykeeper.engine;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+import com.querykeeper.collector.DuplicateTracker;
 import com.querykeeper.collector.QueryKeeperContext;
-import com.querykeeper.collector.QueryLog;
 
 public class DuplicateQueryAssertionEngine {
 
     public static void assertNoExcessiveDuplicates(Method method, int maxAllowed, List<String> finalLog,
             List<Throwable> finalFailures) {
-        List<QueryLog> logs = QueryKeeperContext.getCurrent().getLogs();
+        DuplicateTracker tracker = QueryKeeperContext.getCurrent().getDuplicateTracker();
 
-        Map<String, Integer> fingerprintCount = new HashMap<>();
-
-        for (QueryLog log : logs) {
-            String fp = log.fingerprint();
-            if (fp != null) {
-                fingerprintCount.merge(fp, 1, Integer::sum);
-            }
-        }
-
-        int totalDuplicates = fingerprintCount.values().stream()
-                .mapToInt(count -> count - 1)
-                .filter(v -> v > 0)
-                .sum();
+        int totalDuplicates = tracker.getTotalDuplicates();
 
         if (totalDuplicates > maxAllowed) {
             finalLog.add("[QueryKeeper] ▶ ExpectDuplicateQuery X FAILED - Found "
                     + totalDuplicates + " duplicate queries (allowed: " + maxAllowed + ")");
-            fingerprintCount.entrySet().stream()
-                    .filter(e -> e.getValue() > 1)
-                    .forEach(entry -> {
-                        finalLog.add("  • Duplicate [" + entry.getValue() + "x] → " + entry.getKey());
-                    });
+            tracker.getDuplicates().forEach(duplicate -> {
+                finalLog.add("  • Duplicate [" + duplicate.getCount() + "x] → " + duplicate.getFingerprint());
+            });
 
             finalFailures.add(new AssertionError(
                     "[QueryKeeper] ▶ Expected at most " + maxAllowed + " duplicate queries, but found "
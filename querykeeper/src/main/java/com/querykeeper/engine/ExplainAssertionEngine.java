@@ -0,0 +1,133 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.querykeeper.annotation.ExpectIndexUsage;
+import com.querykeeper.annotation.ExpectNoFullScan;
+import com.querykeeper.collector.ExplainPlan;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.collector.QueryLog;
+import com.querykeeper.collector.QueryPlanner;
+
+public class ExplainAssertionEngine {
+
+    public static void assertNoFullScan(Method method, ExpectNoFullScan expectation, List<String> finalLog,
+            List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        Set<String> tables = lowerCase(expectation.tables());
+        List<String> unexplained = new ArrayList<>();
+        Map<QueryLog, ExplainPlan> plans = explainSelects(unexplained);
+        String scope = tables.isEmpty() ? "any table" : tables.toString();
+
+        if (plans.isEmpty() && !unexplained.isEmpty()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectNoFullScan (!) SKIPPED - " + methodName
+                    + ", No SELECT could be explained" + details(unexplained));
+            return;
+        }
+
+        List<String> offenders = new ArrayList<>();
+        for (Map.Entry<QueryLog, ExplainPlan> entry : plans.entrySet()) {
+            for (ExplainPlan.Step scan : entry.getValue().getFullScans()) {
+                if (!tables.isEmpty() && !tables.contains(scan.getTable()))
+                    continue;
+                QueryLog log = entry.getKey();
+                offenders.add("Full scan of " + scan.getTable() + " → " + log.sql + " at " + log.caller);
+                finalFailures.add(new AssertionError("[QueryKeeper] ▶ Full table scan of " + scan.getTable()
+                        + " in " + methodName + ": " + log.sql + " at " + log.caller));
+            }
+        }
+
+        String summary = methodName + ", " + plans.size() + " SELECT(s) explained, full scans on " + scope + ": "
+                + offenders.size() + details(offenders) + details(unexplained);
+        if (offenders.isEmpty()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectNoFullScan ✓ PASSED - " + summary);
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectNoFullScan X FAILED - " + summary);
+        }
+    }
+
+    public static void assertIndexUsage(Method method, ExpectIndexUsage expectation, List<String> finalLog,
+            List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        Set<String> expected = lowerCase(expectation.value());
+        List<String> unexplained = new ArrayList<>();
+        Map<QueryLog, ExplainPlan> plans = explainSelects(unexplained);
+
+        if (plans.isEmpty() && !unexplained.isEmpty()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectIndexUsage (!) SKIPPED - " + methodName
+                    + ", No SELECT could be explained" + details(unexplained));
+            return;
+        }
+
+        Set<String> used = new TreeSet<>();
+        List<String> offenders = new ArrayList<>();
+        for (Map.Entry<QueryLog, ExplainPlan> entry : plans.entrySet()) {
+            ExplainPlan plan = entry.getValue();
+            used.addAll(plan.getIndexes());
+            if (expected.isEmpty() && !plan.getFullScans().isEmpty()) {
+                QueryLog log = entry.getKey();
+                offenders.add("No index for " + plan.getFullScans().get(0).getTable() + " → " + log.sql + " at "
+                        + log.caller);
+                finalFailures.add(new AssertionError("[QueryKeeper] ▶ SELECT in " + methodName + " reads "
+                        + plan.getFullScans().get(0).getTable() + " without an index: " + log.sql));
+            }
+        }
+        for (String index : expected) {
+            if (!used.contains(index)) {
+                offenders.add("Index " + index + " not used");
+                finalFailures.add(new AssertionError("[QueryKeeper] ▶ Index " + index
+                        + " was not used by any SELECT in " + methodName + " (used: " + used + ")"));
+            }
+        }
+
+        String summary = methodName + ", " + plans.size() + " SELECT(s) explained, indexes used: " + used
+                + details(offenders) + details(unexplained);
+        if (offenders.isEmpty()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectIndexUsage ✓ PASSED - " + summary);
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectIndexUsage X FAILED - " + summary);
+        }
+    }
+
+    /**
+     * Explains every distinct SELECT of the current context, using the sample
+     * the aggregates keep per shape; statements that cannot be explained are
+     * described in {@code unexplained}.
+     */
+    private static Map<QueryLog, ExplainPlan> explainSelects(List<String> unexplained) {
+        Map<QueryLog, ExplainPlan> plans = new LinkedHashMap<>();
+        for (QueryLog log : QueryKeeperContext.getCurrent().getAggregates().getExplainSamples()) {
+            try {
+                plans.put(log, QueryPlanner.explain(log));
+            } catch (SQLException e) {
+                unexplained.add("Not explained: " + log.sql + " (" + e.getMessage() + ")");
+            }
+        }
+        return plans;
+    }
+
+    private static Set<String> lowerCase(String[] names) {
+        Set<String> result = new TreeSet<>();
+        for (String name : Arrays.asList(names)) {
+            result.add(name.toLowerCase(Locale.ROOT));
+        }
+        return result;
+    }
+
+    private static String details(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append("\n  • ").append(line);
+        }
+        return sb.toString();
+    }
+}
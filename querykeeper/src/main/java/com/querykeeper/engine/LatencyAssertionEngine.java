@@ -0,0 +1,64 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.querykeeper.annotation.ExpectLatency;
+import com.querykeeper.collector.LatencyHistogram;
+
+public class LatencyAssertionEngine {
+
+    public static void assertLatency(Method method, ExpectLatency expectation, long[] samplesNanos,
+            List<String> finalLog, List<Throwable> finalFailures) {
+        String methodName = method.getName();
+
+        if (samplesNanos == null || samplesNanos.length == 0) {
+            finalLog.add("[QueryKeeper] ▶ ExpectLatency (!) SKIPPED - " + methodName + " was not measured");
+            return;
+        }
+
+        long[] sorted = samplesNanos.clone();
+        Arrays.sort(sorted);
+        double actual = LatencyHistogram.toMs(percentile(sorted, expectation.percentile()));
+        String label = "p" + format(expectation.percentile());
+
+        String distribution = methodName + " over " + sorted.length + " runs (" + expectation.warmup()
+                + " warmup) - min: " + formatMs(LatencyHistogram.toMs(sorted[0]))
+                + ", median: " + formatMs(LatencyHistogram.toMs(percentile(sorted, 50)))
+                + ", p95: " + formatMs(LatencyHistogram.toMs(percentile(sorted, 95)))
+                + ", max: " + formatMs(LatencyHistogram.toMs(sorted[sorted.length - 1]));
+
+        if (expectation.value() <= 0) {
+            finalLog.add("[QueryKeeper] ▶ ExpectLatency (!) SKIPPED - " + distribution + " (no threshold set)");
+            return;
+        }
+
+        String expected = " (expected " + label + " <= " + formatMs(expectation.value()) + ")";
+        if (actual > expectation.value()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectLatency X FAILED - " + distribution + expected);
+            finalFailures.add(new AssertionError("Latency exceeded: " + label + " " + formatMs(actual) + " > "
+                    + formatMs(expectation.value())));
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectLatency ✓ PASSED - " + distribution + expected);
+        }
+    }
+
+    /**
+     * Nearest-rank percentile of sorted samples.
+     */
+    static long percentile(long[] sorted, double percentile) {
+        double p = Math.min(100.0, Math.max(0.0, percentile));
+        int rank = (int) Math.ceil(sorted.length * p / 100.0);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static String formatMs(double ms) {
+        return String.format(Locale.ROOT, "%.3fms", ms);
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+}
@@ -0,0 +1,70 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.querykeeper.annotation.ExpectNoNPlusOne;
+import com.querykeeper.collector.QueryAggregates;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.collector.SqlMetadata;
+
+public class NPlusOneAssertionEngine {
+
+    /**
+     * Threshold of {@link ExpectNoNPlusOne} when not set, also used by the suite
+     * report for tests without the annotation.
+     */
+    public static final int DEFAULT_THRESHOLD = 2;
+
+    private static final Pattern JOIN_COLUMN = Pattern.compile("\\bwhere\\s+(?:[\\w$]+\\.)?([\\w$]+)\\s*=\\s*\\?");
+
+    public static void assertNoNPlusOne(Method method, ExpectNoNPlusOne expectation, List<String> finalLog,
+            List<Throwable> finalFailures) {
+        String methodName = method.getName();
+
+        List<QueryAggregates.CallSiteStats> suspects = findSuspects(QueryKeeperContext.getCurrent().getAggregates(),
+                expectation.threshold());
+
+        if (suspects.isEmpty()) {
+            finalLog.add("[QueryKeeper] ▶ ExpectNoNPlusOne ✓ PASSED - " + methodName
+                    + ", no SELECT repeated more than " + expectation.threshold() + " times from one caller");
+            return;
+        }
+
+        finalLog.add("[QueryKeeper] ▶ ExpectNoNPlusOne X FAILED - " + methodName + ", found " + suspects.size()
+                + " N+1 pattern(s) (threshold: " + expectation.threshold() + ")");
+        for (QueryAggregates.CallSiteStats site : suspects) {
+            String association = association(site.getSample().getMetadata());
+            finalLog.add("  • [" + site.getExecutions() + "x] " + association);
+            finalLog.add("    SQL    : " + site.getSample().sql);
+            finalLog.add("    Caller : " + site.getSample().caller);
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ N+1 detected: " + association
+                    + " loaded " + site.getExecutions() + " times from " + site.getSample().caller));
+        }
+    }
+
+    /**
+     * Call sites that ran the same SELECT more than {@code threshold} times with
+     * varying parameters.
+     */
+    public static List<QueryAggregates.CallSiteStats> findSuspects(QueryAggregates aggregates, int threshold) {
+        List<QueryAggregates.CallSiteStats> suspects = new ArrayList<>();
+        for (QueryAggregates.CallSiteStats site : aggregates.getSelectCallSites()) {
+            if (site.getExecutions() > threshold && site.hasVaryingParameters())
+                suspects.add(site);
+        }
+        return suspects;
+    }
+
+    /**
+     * Best-effort name of the loaded association, e.g. {@code orders.member_id}.
+     */
+    public static String association(SqlMetadata metadata) {
+        String table = metadata.getTables().isEmpty() ? "unknown" : metadata.getTables().get(0);
+        Matcher matcher = JOIN_COLUMN.matcher(metadata.getNormalizedSql());
+        return matcher.find() ? table + "." + matcher.group(1) : table;
+    }
+}
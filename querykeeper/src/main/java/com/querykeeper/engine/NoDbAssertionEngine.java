@@ -8,7 +8,7 @@ import com.querykeeper.collector.QueryKeeperContext;
 public class NoDbAssertionEngine {
 
     public static void assertNoDb(Method method, List<String> finalLog, List<Throwable> finalFailures) {
-        long totalQueries = QueryKeeperContext.getCurrent().getLogs().size();
+        long totalQueries = QueryKeeperContext.getCurrent().getStatistics().getExecutions();
         String methodName = method.getName();
 
         if (totalQueries > 0) {
@@ -2,11 +2,10 @@ package com.querykeeper.engine;
 
 import java.lang.reflect.Method;
 import java.util.List;
-import java.util.Map;
 
 import com.querykeeper.annotation.ExpectQuery;
 import com.querykeeper.collector.QueryKeeperContext;
-import com.querykeeper.collector.QueryLog;
+import com.querykeeper.collector.QueryStatistics;
 
 public class QueryAssertionEngine {
 
@@ -14,13 +13,13 @@ public class QueryAssertionEngine {
             List<String> finalLog,
             List<Throwable> finalFailures) {
         String methodName = method.getName();
-        List<QueryLog> logs = QueryKeeperContext.getCurrent().getLogs();
+        QueryStatistics statistics = QueryKeeperContext.getCurrent().getStatistics();
         StringBuilder sb = new StringBuilder();
 
-        long select = logs.stream().filter(l -> l.getType().equals("SELECT")).count();
-        long insert = logs.stream().filter(l -> l.getType().equals("INSERT")).count();
-        long update = logs.stream().filter(l -> l.getType().equals("UPDATE")).count();
-        long delete = logs.stream().filter(l -> l.getType().equals("DELETE")).count();
+        long select = statistics.getSelects();
+        long insert = statistics.getInserts();
+        long update = statistics.getUpdates();
+        long delete = statistics.getDeletes();
 
         boolean hasExpectation = expectation.select() >= 0 ||
                 expectation.insert() >= 0 ||
@@ -30,7 +29,6 @@ public class QueryAssertionEngine {
         if (!hasExpectation) {
             finalLog.add("[QueryKeeper] ▶ ExpectQuery (!) SKIPPED - " + methodName +
                     ", No expectations set, logging queries only.");
-            appendQueryList(finalLog, logs);
             return false;
         }
 
@@ -70,7 +68,6 @@ public class QueryAssertionEngine {
             sb.append(")");
 
             finalLog.add(sb.toString());
-            appendQueryList(finalLog, logs);
 
             if (expectation.select() >= 0 && select != expectation.select()) {
                 finalFailures.add(new AssertionError(
@@ -91,52 +88,8 @@ public class QueryAssertionEngine {
 
         } else {
             finalLog.add("[QueryKeeper] ▶ ExpectQuery ✓ PASSED - " + methodName);
-            appendQueryList(finalLog, logs);
         }
 
         return true;
     }
-
-    private static void appendQueryList(List<String> log, List<QueryLog> logs) {
-        log.add("--------------------------------------------------------");
-        log.add("Total Queries: " + logs.size());
-        log.add("--------------------------------------------------------");
-
-        int num = 1;
-        for (QueryLog q : logs) {
-            log.add(num + ". [" + q.getType() + "] (" + q.durationMs + " ms)");
-
-            String formattedSql = q.sql;
-            if (!q.parameters.isEmpty()) {
-                formattedSql = formatSqlWithParams(q.sql, q.parameters);
-            }
-
-            log.add("SQL     : " + formattedSql);
-            log.add("Caller  : " + q.caller);
-            log.add("--------------------------------------------------------");
-            num++;
-        }
-    }
-
-    private static String formatSqlWithParams(String sql, Map<Integer, Object> params) {
-        if (!sql.contains("?"))
-            return sql;
-        StringBuilder result = new StringBuilder();
-        int paramIndex = 1;
-        int lastIndex = 0;
-
-        for (int i = 0; i < sql.length(); i++) {
-            if (sql.charAt(i) == '?') {
-                result.append(sql, lastIndex, i);
-
-                Object value = params.get(paramIndex++);
-                String replacement = (value instanceof Number) ? value.toString() : "'" + value + "'";
-                result.append(replacement);
-
-                lastIndex = i + 1;
-            }
-        }
-        result.append(sql.substring(lastIndex));
-        return result.toString();
-    }
 }
@@ -0,0 +1,84 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.querykeeper.annotation.ExpectQueryLatency;
+import com.querykeeper.collector.LatencyHistogram;
+import com.querykeeper.collector.QueryAggregates;
+import com.querykeeper.collector.QueryKeeperContext;
+
+public class QueryLatencyAssertionEngine {
+
+    public static void assertLatency(Method method, ExpectQueryLatency expectation, List<String> finalLog,
+            List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        QueryAggregates aggregates = QueryKeeperContext.getCurrent().getAggregates();
+        LatencyHistogram overall = aggregates.getLatencyHistogram();
+
+        String summary = methodName + " ran " + overall.getCount() + " queries, p50: "
+                + format(overall.getPercentileMs(50)) + ", p99: " + format(overall.getPercentileMs(99))
+                + ", max: " + format(overall.getMaxMs());
+
+        if (expectation.p50() < 0 && expectation.p99() < 0 && expectation.max() < 0) {
+            finalLog.add("[QueryKeeper] ▶ ExpectQueryLatency (!) SKIPPED - " + summary + " (no threshold set)");
+            return;
+        }
+
+        int failuresBefore = finalFailures.size();
+        StringBuilder offenders = new StringBuilder();
+        Set<LatencyHistogram> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (QueryAggregates.SqlStats stats : aggregates.getSqlStats()) {
+            if (stats.getMetadata().isInternal())
+                continue;
+
+            // SQL strings of the same shape share one histogram
+            LatencyHistogram latency = stats.getLatencyHistogram();
+            if (!checked.add(latency))
+                continue;
+            String shape = latency == aggregates.getOtherShapesLatency() ? "(other SQL shapes)"
+                    : stats.getMetadata().getShape();
+            StringBuilder exceeded = new StringBuilder();
+            check(exceeded, "p50", latency.getPercentileMs(50), expectation.p50());
+            check(exceeded, "p99", latency.getPercentileMs(99), expectation.p99());
+            check(exceeded, "max", latency.getMaxMs(), expectation.max());
+            if (exceeded.length() == 0)
+                continue;
+
+            offenders.append("\n  • [").append(exceeded).append(", ").append(latency.getCount())
+                    .append(" executions] → ").append(shape);
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ Query latency exceeded (" + exceeded + "): "
+                    + shape));
+        }
+
+        String limits = "expected p50 <= " + limit(expectation.p50()) + ", p99 <= " + limit(expectation.p99())
+                + ", max <= " + limit(expectation.max());
+
+        if (finalFailures.size() > failuresBefore) {
+            finalLog.add("[QueryKeeper] ▶ ExpectQueryLatency X FAILED - " + summary + " (" + limits + ")" + offenders);
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectQueryLatency ✓ PASSED - " + summary + " (" + limits + ")");
+        }
+    }
+
+    private static void check(StringBuilder exceeded, String name, double actualMs, double limitMs) {
+        if (limitMs < 0 || actualMs <= limitMs)
+            return;
+        if (exceeded.length() > 0)
+            exceeded.append(", ");
+        exceeded.append(name).append(" ").append(format(actualMs)).append(" > ").append(format(limitMs));
+    }
+
+    private static String limit(double limitMs) {
+        return limitMs < 0 ? "-" : format(limitMs);
+    }
+
+    static String format(double ms) {
+        return String.format(Locale.ROOT, "%.3fms", ms);
+    }
+}
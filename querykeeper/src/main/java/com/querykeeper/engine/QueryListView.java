@@ -0,0 +1,124 @@
+package com.querykeeper.engine;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.querykeeper.collector.LatencyHistogram;
+import com.querykeeper.collector.QueryJournal;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.collector.QueryLog;
+import com.querykeeper.collector.QueryStatistics;
+import com.querykeeper.collector.ResultSetStats;
+import com.querykeeper.collector.TransactionTracker;
+
+/**
+ * The query list of a test: a totals header followed by every query retained
+ * by the journal with its inlined parameters, rows and caller.
+ *
+ * Nothing is formatted until {@link #forEachLine(Consumer)} is called, and
+ * lines are handed out one at a time, so a list that is not shown costs
+ * nothing and one that is shown never exists as a single string.
+ */
+public final class QueryListView {
+
+    private static final String SEPARATOR = "--------------------------------------------------------";
+
+    private final QueryKeeperContext context;
+
+    private QueryListView(QueryKeeperContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns a view of {@code context}, which may be closed before the view is
+     * rendered.
+     */
+    public static QueryListView of(QueryKeeperContext context) {
+        return new QueryListView(context);
+    }
+
+    public void forEachLine(Consumer<String> sink) {
+        QueryStatistics statistics = context.getStatistics();
+        QueryJournal journal = context.getJournal();
+        List<QueryLog> logs = journal.snapshot();
+
+        sink.accept(SEPARATOR);
+        if (journal.getDropped() > 0) {
+            sink.accept("Total Queries: " + journal.getTotal() + " (showing last " + logs.size() + ")");
+        } else {
+            sink.accept("Total Queries: " + journal.getTotal());
+        }
+        sink.accept("DB Time      : "
+                + String.format(Locale.ROOT, "%.3f ms", LatencyHistogram.toMs(statistics.getDbNanos())));
+        if (!statistics.getStatementsByTable().isEmpty()) {
+            sink.accept("By Table     : " + statistics.getStatementsByTable());
+        }
+        if (statistics.getStatementsByDataSource().size() > 1) {
+            sink.accept("By DataSource: " + statistics.getStatementsByDataSource());
+        }
+        sink.accept(SEPARATOR);
+
+        long num = journal.getTotal() - logs.size() + 1;
+        for (QueryLog q : logs) {
+            if (q.isBatch()) {
+                sink.accept(num + ". [" + q.getType() + "] (" + formatDuration(q) + ") batch of "
+                        + q.getStatementCount());
+                for (Map<Integer, Object> row : q.batchParameters) {
+                    sink.accept("SQL     : " + formatSqlWithParams(q.sql, row));
+                }
+            } else {
+                sink.accept(num + ". [" + q.getType() + "] (" + formatDuration(q) + ")");
+
+                String formattedSql = q.sql;
+                if (!q.parameters.isEmpty()) {
+                    formattedSql = formatSqlWithParams(q.sql, q.parameters);
+                }
+
+                sink.accept("SQL     : " + formattedSql);
+            }
+            ResultSetStats rows = q.getResultSetStats();
+            if (rows != null) {
+                String hydration = rows.getHydrationBytes() >= 0
+                        ? ", " + rows.getHydrationBytes() + " bytes allocated"
+                        : "";
+                sink.accept("Rows    : " + rows.getRows() + " (" + rows.getColumnCount() + " columns, ~"
+                        + rows.getApproximateBytes() + " bytes, " + rows.getFetchMs() + " ms fetch" + hydration
+                        + ")");
+            }
+            if (q.transactionId != TransactionTracker.AUTO_COMMIT) {
+                sink.accept("Tx      : tx#" + q.transactionId);
+            }
+            sink.accept("Caller  : " + q.caller);
+            sink.accept(SEPARATOR);
+            num++;
+        }
+    }
+
+    private static String formatDuration(QueryLog q) {
+        return String.format(Locale.ROOT, "%.3f ms", LatencyHistogram.toMs(q.durationNanos));
+    }
+
+    private static String formatSqlWithParams(String sql, Map<Integer, Object> params) {
+        if (!sql.contains("?"))
+            return sql;
+        StringBuilder result = new StringBuilder();
+        int paramIndex = 1;
+        int lastIndex = 0;
+
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) == '?') {
+                result.append(sql, lastIndex, i);
+
+                Object value = params.get(paramIndex++);
+                String replacement = (value instanceof Number) ? value.toString() : "'" + value + "'";
+                result.append(replacement);
+
+                lastIndex = i + 1;
+            }
+        }
+        result.append(sql.substring(lastIndex));
+        return result.toString();
+    }
+}
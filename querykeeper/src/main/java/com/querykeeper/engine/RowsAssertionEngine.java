@@ -0,0 +1,49 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.querykeeper.annotation.ExpectRows;
+import com.querykeeper.collector.QueryAggregates;
+import com.querykeeper.collector.QueryKeeperContext;
+
+public class RowsAssertionEngine {
+
+    public static void assertRows(Method method, ExpectRows expectation, List<String> finalLog,
+            List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        QueryAggregates aggregates = QueryKeeperContext.getCurrent().getAggregates();
+
+        long total = aggregates.getRowsFetched();
+        int failuresBefore = finalFailures.size();
+        StringBuilder offenders = new StringBuilder();
+
+        if (expectation.maxPerQuery() >= 0) {
+            for (QueryAggregates.SqlStats stats : aggregates.getSqlStats()) {
+                if (stats.getMaxRows() <= expectation.maxPerQuery())
+                    continue;
+
+                offenders.append("\n  • [").append(stats.getMaxRows()).append(" rows] → ").append(stats.getSql())
+                        .append("\n    Caller: ").append(stats.getMaxRowsCaller());
+                finalFailures.add(new AssertionError("[QueryKeeper] ▶ Expected at most " + expectation.maxPerQuery()
+                        + " rows per query, but fetched " + stats.getMaxRows() + " rows: " + stats.getSql()));
+            }
+        }
+
+        if (expectation.maxTotal() >= 0 && total > expectation.maxTotal()) {
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ Expected at most " + expectation.maxTotal()
+                    + " rows in total, but fetched " + total));
+        }
+
+        String summary = methodName + " fetched " + total + " rows (~" + aggregates.getBytesFetched() + " bytes, "
+                + TimeUnit.NANOSECONDS.toMillis(aggregates.getFetchNanos()) + " ms in next()), maxPerQuery: "
+                + expectation.maxPerQuery() + ", maxTotal: " + expectation.maxTotal();
+
+        if (finalFailures.size() > failuresBefore) {
+            finalLog.add("[QueryKeeper] ▶ ExpectRows X FAILED - " + summary + offenders);
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectRows ✓ PASSED - " + summary);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.querykeeper.annotation.ExpectTransactions;
+import com.querykeeper.collector.LatencyHistogram;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.collector.TransactionTracker;
+
+public class TransactionAssertionEngine {
+
+    public static void assertTransactions(Method method, ExpectTransactions expectation, List<String> finalLog,
+            List<Throwable> finalFailures) {
+        String methodName = method.getName();
+        TransactionTracker tracker = QueryKeeperContext.getCurrent().getAggregates().getTransactionTracker();
+        List<TransactionTracker.Transaction> transactions = tracker.getTransactions();
+        long total = tracker.getTotal();
+
+        TransactionTracker.Transaction longest = null;
+        for (TransactionTracker.Transaction transaction : transactions) {
+            if (longest == null || transaction.getDurationNanos() > longest.getDurationNanos())
+                longest = transaction;
+        }
+
+        int failuresBefore = finalFailures.size();
+        if (expectation.max() >= 0 && total > expectation.max()) {
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ Expected at most " + expectation.max()
+                    + " transactions, but ran " + total + " (" + transactions.size() + " explicit, "
+                    + tracker.getAutoCommitTransactions() + " auto-commit)"));
+        }
+        if (expectation.maxDurationMs() >= 0 && longest != null
+                && longest.getDurationNanos() > TimeUnit.MILLISECONDS.toNanos(expectation.maxDurationMs())) {
+            finalFailures.add(new AssertionError("[QueryKeeper] ▶ Transaction tx#" + longest.getId() + " took "
+                    + formatMs(longest.getDurationNanos()) + " (expected <= " + expectation.maxDurationMs()
+                    + "ms), started at " + longest.getCaller()));
+        }
+
+        StringBuilder summary = new StringBuilder();
+        summary.append(methodName).append(" ran ").append(total).append(" transaction(s): ")
+                .append(transactions.size()).append(" explicit, ").append(tracker.getAutoCommitTransactions())
+                .append(" auto-commit (max: ").append(expectation.max()).append(", maxDurationMs: ")
+                .append(expectation.maxDurationMs()).append(")");
+        for (TransactionTracker.Transaction transaction : transactions) {
+            summary.append("\n  • tx#").append(transaction.getId()).append(" [").append(transaction.getOutcome())
+                    .append(", ").append(transaction.getStatements()).append(" queries, ")
+                    .append(formatMs(transaction.getDurationNanos())).append("] → ")
+                    .append(transaction.getDataSource()).append(" at ").append(transaction.getCaller());
+        }
+
+        if (finalFailures.size() > failuresBefore) {
+            finalLog.add("[QueryKeeper] ▶ ExpectTransactions X FAILED - " + summary);
+        } else {
+            finalLog.add("[QueryKeeper] ▶ ExpectTransactions ✓ PASSED - " + summary);
+        }
+    }
+
+    private static String formatMs(long nanos) {
+        return String.format(Locale.ROOT, "%.3fms", LatencyHistogram.toMs(nanos));
+    }
+}
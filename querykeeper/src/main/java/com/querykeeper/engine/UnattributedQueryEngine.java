@@ -0,0 +1,41 @@
+package com.querykeeper.engine;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+
+import com.querykeeper.collector.QueryKeeperContext;
+
+/**
+ * Reports queries that ran on threads bound to no test while tests were
+ * running in parallel. Their owner is unknown, so the counts of every test
+ * active at that time may be incomplete and assertions such as
+ * {@code @ExpectNoDb} could pass falsely.
+ */
+public class UnattributedQueryEngine {
+
+    /**
+     * {@code fail} (default) fails the affected tests, {@code warn} only logs.
+     */
+    public static final String MODE_PROPERTY = "querykeeper.unattributed";
+
+    public static void checkAttribution(Method method, List<String> finalLog, List<Throwable> finalFailures) {
+        long unattributed = QueryKeeperContext.getCurrent().getUnattributedQueries();
+        if (unattributed == 0)
+            return;
+
+        String methodName = method.getName();
+        String mode = System.getProperty(MODE_PROPERTY, "fail").trim().toLowerCase(Locale.ROOT);
+        String detail = unattributed + " queries ran on threads bound to no test while " + methodName
+                + "() ran in parallel with other tests"
+                + "\n  • Propagate the context with QueryKeeperContext.wrap(...) or run the test in isolation";
+
+        if (mode.equals("warn")) {
+            finalLog.add("[QueryKeeper] ▶ Unattributed queries (!) WARNING - " + detail);
+            return;
+        }
+        finalLog.add("[QueryKeeper] ▶ Unattributed queries X FAILED - " + detail);
+        finalFailures.add(new AssertionError("[QueryKeeper] ▶ Query counts of " + methodName
+                + "() are unreliable: " + unattributed + " unattributed queries (" + MODE_PROPERTY + "=warn to allow)"));
+    }
+}
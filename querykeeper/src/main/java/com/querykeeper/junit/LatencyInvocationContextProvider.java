@@ -0,0 +1,150 @@
+package com.querykeeper.junit;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.Extension;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.TestTemplateInvocationContext;
+import org.junit.jupiter.api.extension.TestTemplateInvocationContextProvider;
+
+import com.querykeeper.annotation.ExpectLatency;
+
+/**
+ * Turns an {@code @ExpectLatency} method into its warmup and measured
+ * repetitions.
+ *
+ * Every repetition is a regular JUnit invocation with its own test instance,
+ * {@code @BeforeEach}/{@code @AfterEach} methods and extension callbacks, so a
+ * Spring test transaction is rolled back after each one. The repetition
+ * measures only the test method, between the before and after test execution
+ * callbacks, and {@link QueryKeeperExtension} asserts on the last one.
+ */
+public class LatencyInvocationContextProvider implements TestTemplateInvocationContextProvider {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace
+            .create(LatencyInvocationContextProvider.class);
+
+    @Override
+    public boolean supportsTestTemplate(ExtensionContext context) {
+        return context.getTestMethod().map(method -> method.isAnnotationPresent(ExpectLatency.class)).orElse(false);
+    }
+
+    @Override
+    public Stream<TestTemplateInvocationContext> provideTestTemplateInvocationContexts(ExtensionContext context) {
+        Method method = context.getRequiredTestMethod();
+        if (method.isAnnotationPresent(Test.class)) {
+            throw new ExtensionConfigurationException("@ExpectLatency runs " + method.getName()
+                    + " as its own repetitions; remove @Test");
+        }
+
+        ExpectLatency expectation = method.getAnnotation(ExpectLatency.class);
+        int warmup = Math.max(0, expectation.warmup());
+        int iterations = Math.max(1, expectation.iterations());
+        Samples samples = new Samples(iterations);
+        return IntStream.range(0, warmup + iterations)
+                .mapToObj(index -> new Repetition(samples, index, warmup, iterations));
+    }
+
+    /**
+     * Returns whether the test is a warmup or measured repetition other than the
+     * last one, whose assertions are skipped.
+     */
+    static boolean isIntermediate(ExtensionContext context) {
+        Repetition repetition = context.getStore(NAMESPACE).get(Repetition.class, Repetition.class);
+        return repetition != null && !repetition.isLast();
+    }
+
+    /**
+     * Returns the durations of the measured repetitions so far, or
+     * {@code null} if the test is not an {@code @ExpectLatency} repetition.
+     */
+    static long[] samples(ExtensionContext context) {
+        Repetition repetition = context.getStore(NAMESPACE).get(Repetition.class, Repetition.class);
+        return repetition != null ? repetition.samples.toArray() : null;
+    }
+
+    /**
+     * Durations of the measured repetitions of one test template.
+     */
+    private static final class Samples {
+        private final long[] nanos;
+        private int size;
+
+        Samples(int iterations) {
+            this.nanos = new long[iterations];
+        }
+
+        synchronized void add(long elapsedNanos) {
+            if (size < nanos.length) {
+                nanos[size++] = elapsedNanos;
+            }
+        }
+
+        synchronized long[] toArray() {
+            return Arrays.copyOf(nanos, size);
+        }
+    }
+
+    /**
+     * One invocation of the template. It registers itself for that invocation
+     * only and times the test method.
+     */
+    private static final class Repetition
+            implements TestTemplateInvocationContext, BeforeTestExecutionCallback, AfterTestExecutionCallback {
+        private final Samples samples;
+        private final int index;
+        private final int warmup;
+        private final int iterations;
+        private long startNanos;
+
+        Repetition(Samples samples, int index, int warmup, int iterations) {
+            this.samples = samples;
+            this.index = index;
+            this.warmup = warmup;
+            this.iterations = iterations;
+        }
+
+        boolean isLast() {
+            return index == warmup + iterations - 1;
+        }
+
+        @Override
+        public String getDisplayName(int invocationIndex) {
+            return index < warmup ? "warmup " + (index + 1) + "/" + warmup
+                    : "iteration " + (index - warmup + 1) + "/" + iterations;
+        }
+
+        @Override
+        public List<Extension> getAdditionalExtensions() {
+            return Collections.singletonList(this);
+        }
+
+        @Override
+        public void beforeTestExecution(ExtensionContext context) {
+            context.getStore(NAMESPACE).put(Repetition.class, this);
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Runs before {@link QueryKeeperExtension#afterTestExecution}, because
+         * invocation extensions are registered after the class level ones and
+         * after callbacks run in reverse order.
+         */
+        @Override
+        public void afterTestExecution(ExtensionContext context) {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            if (index >= warmup) {
+                samples.add(elapsedNanos);
+            }
+        }
+    }
+}
@@ -3,56 +3,160 @@ package com.querykeeper.junit;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.junit.jupiter.api.extension.AfterEachCallback;
 import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.TestInstancePostProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.querykeeper.annotation.ExpectAllocation;
+import com.querykeeper.annotation.ExpectBaseline;
+import com.querykeeper.annotation.ExpectBatch;
+import com.querykeeper.annotation.ExpectConnections;
+import com.querykeeper.annotation.ExpectDbTime;
+import com.querykeeper.annotation.ExpectDbTimeRatio;
 import com.querykeeper.annotation.ExpectDetachedAccess;
 import com.querykeeper.annotation.ExpectDuplicateQuery;
+import com.querykeeper.annotation.ExpectIndexUsage;
+import com.querykeeper.annotation.ExpectLatency;
 import com.querykeeper.annotation.ExpectNoDb;
+import com.querykeeper.annotation.ExpectNoFullScan;
+import com.querykeeper.annotation.ExpectNoNPlusOne;
 import com.querykeeper.annotation.ExpectQuery;
+import com.querykeeper.annotation.ExpectQueryLatency;
+import com.querykeeper.annotation.ExpectRows;
 import com.querykeeper.annotation.ExpectTime;
+import com.querykeeper.annotation.ExpectTransactions;
+import com.querykeeper.collector.AllocationMeter;
 import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.engine.AllocationAssertionEngine;
+import com.querykeeper.engine.BaselineAssertionEngine;
+import com.querykeeper.engine.BatchAssertionEngine;
+import com.querykeeper.engine.ConnectionAssertionEngine;
+import com.querykeeper.engine.DbTimeAssertionEngine;
 import com.querykeeper.engine.DetachedAccessAssertionEngine;
 import com.querykeeper.engine.DuplicateQueryAssertionEngine;
+import com.querykeeper.engine.ExplainAssertionEngine;
+import com.querykeeper.engine.LatencyAssertionEngine;
+import com.querykeeper.engine.NPlusOneAssertionEngine;
 import com.querykeeper.engine.NoDbAssertionEngine;
 import com.querykeeper.engine.NoTxAssertionEngine;
 import com.querykeeper.engine.QueryAssertionEngine;
+import com.querykeeper.engine.QueryLatencyAssertionEngine;
+import com.querykeeper.engine.QueryListView;
+import com.querykeeper.engine.RowsAssertionEngine;
 import com.querykeeper.engine.TimeAssertionEngine;
+import com.querykeeper.engine.TransactionAssertionEngine;
+import com.querykeeper.engine.UnattributedQueryEngine;
+import com.querykeeper.report.SuiteReporter;
+import com.querykeeper.report.TestReport;
 
-public class QueryKeeperExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+/**
+ * Runs the QueryKeeper assertions around each test method.
+ *
+ * One instance serves every test of a class, possibly concurrently when
+ * {@code junit.jupiter.execution.parallel.enabled} is set. All per-test state
+ * therefore lives in the method-level {@link ExtensionContext.Store}, and each
+ * test records into its own {@link QueryKeeperContext} bound to the thread
+ * that runs it.
+ *
+ * From test instance post-processing to {@code afterEach} the thread is bound
+ * to an unmeasured context outside of the test method itself, so that setup
+ * such as {@code @BeforeEach} inserts, Spring {@code @Sql} scripts or the
+ * startup of a Spring context is owned by its test: it is neither counted by
+ * it nor taken for another parallel test's queries. Callbacks of extensions
+ * registered before this one run earlier and are not covered, so
+ * {@code @EnableQueryKeeper} should be declared before Spring's test
+ * annotations.
+ */
+public class QueryKeeperExtension implements TestInstancePostProcessor, BeforeEachCallback,
+        BeforeTestExecutionCallback, AfterTestExecutionCallback, AfterEachCallback {
 
     private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace
             .create(QueryKeeperExtension.class);
 
-    private List<String> finalLog;
-    private List<Throwable> finalFailures;
+    /**
+     * Lines per log event when streaming a query list.
+     */
+    private static final int LOG_CHUNK_LINES = 200;
+
+    private static final String PARALLEL_PROPERTY = "junit.jupiter.execution.parallel.enabled";
 
     @Override
-    public void beforeTestExecution(ExtensionContext context) {
-        finalLog = new ArrayList<>();
-        finalFailures = new ArrayList<>();
+    public void postProcessTestInstance(Object testInstance, ExtensionContext context) {
+        // Replaced by the invocation context in beforeEach
         QueryKeeperContext.clear();
+        QueryKeeperContext.openUnmeasured();
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        boolean parallel = context.getConfigurationParameter(PARALLEL_PROPERTY).map(Boolean::parseBoolean)
+                .orElse(false);
+        QueryKeeperContext.setSoleActiveFallback(!parallel);
+        QueryKeeperContext.clear();
+        context.getStore(NAMESPACE).put("invocationContext", QueryKeeperContext.openUnmeasured());
+    }
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        TestResult result = new TestResult();
+        ExtensionContext.Store store = context.getStore(NAMESPACE);
+        store.put("testResult", result);
+        closeInvocationContext(store);
 
         Method method = context.getRequiredTestMethod();
-        context.getStore(NAMESPACE).put("startTime", System.currentTimeMillis());
+        startMeasurement(store, method);
 
         // ExpectNoTx
-        NoTxAssertionEngine.assertNoTransaction(method, finalLog, finalFailures);
+        NoTxAssertionEngine.assertNoTransaction(method, result.finalLog, result.finalFailures);
+    }
+
+    /**
+     * Opens the query context and takes the start readings of the test method.
+     */
+    private static void startMeasurement(ExtensionContext.Store store, Method method) {
+        QueryKeeperContext queryKeeperContext = QueryKeeperContext.open();
+        store.put("queryKeeperContext", queryKeeperContext);
+        if (method.isAnnotationPresent(ExpectAllocation.class)) {
+            queryKeeperContext.trackAllocations();
+            store.put("allocationStart", AllocationMeter.currentThreadAllocatedBytes());
+        }
+        store.put("startTime", System.nanoTime());
     }
 
     @Override
     public void afterTestExecution(ExtensionContext context) {
+        long allocationEnd = AllocationMeter.currentThreadAllocatedBytes();
         Method method = context.getRequiredTestMethod();
         Logger log = LoggerFactory.getLogger(QueryKeeperExtension.class);
+        ExtensionContext.Store store = context.getStore(NAMESPACE);
+        TestResult result = store.remove("testResult", TestResult.class);
+        if (result == null) {
+            result = new TestResult();
+        }
+        List<String> finalLog = result.finalLog;
+        List<Throwable> finalFailures = result.finalFailures;
+        QueryListView queryList = QueryListView.of(QueryKeeperContext.getCurrent());
+        boolean queryListRequested = false;
 
         try {
-            ExtensionContext.Store store = context.getStore(NAMESPACE);
             Long start = store.remove("startTime", Long.class);
-            long duration = (start != null) ? System.currentTimeMillis() - start : -1;
+            long elapsedNanos = (start != null) ? System.nanoTime() - start : -1;
+            long duration = (start != null) ? TimeUnit.NANOSECONDS.toMillis(elapsedNanos) : -1;
+
+            // Warmup and intermediate @ExpectLatency repetitions are only timed
+            if (LatencyInvocationContextProvider.isIntermediate(context)) {
+                return;
+            }
+
+            // Queries of parallel tests that could not be attributed
+            UnattributedQueryEngine.checkAttribution(method, finalLog, finalFailures);
 
             // ExpectTime
             ExpectTime expectTime = method.getAnnotation(ExpectTime.class);
@@ -60,10 +164,53 @@ public class QueryKeeperExtension implements BeforeTestExecutionCallback, AfterT
                 TimeAssertionEngine.assertExecutionTime(method, duration, expectTime.value(), finalLog, finalFailures);
             }
 
+            // ExpectLatency
+            ExpectLatency expectLatency = method.getAnnotation(ExpectLatency.class);
+            if (expectLatency != null) {
+                long[] latencySamples = LatencyInvocationContextProvider.samples(context);
+                LatencyAssertionEngine.assertLatency(method, expectLatency, latencySamples, finalLog, finalFailures);
+            }
+
+            // ExpectDbTime
+            ExpectDbTime expectDbTime = method.getAnnotation(ExpectDbTime.class);
+            if (expectDbTime != null) {
+                DbTimeAssertionEngine.assertDbTime(method, expectDbTime, elapsedNanos, finalLog, finalFailures);
+            }
+
+            // ExpectDbTimeRatio
+            ExpectDbTimeRatio expectDbTimeRatio = method.getAnnotation(ExpectDbTimeRatio.class);
+            if (expectDbTimeRatio != null) {
+                DbTimeAssertionEngine.assertDbTimeRatio(method, expectDbTimeRatio, elapsedNanos, finalLog,
+                        finalFailures);
+            }
+
+            // ExpectAllocation
+            ExpectAllocation expectAllocation = method.getAnnotation(ExpectAllocation.class);
+            Long allocationStart = store.remove("allocationStart", Long.class);
+            if (expectAllocation != null) {
+                long allocated = (allocationStart != null && allocationStart >= 0) ? allocationEnd - allocationStart
+                        : -1;
+                AllocationAssertionEngine.assertAllocation(method, expectAllocation, allocated, finalLog,
+                        finalFailures);
+            }
+
+            // ExpectConnections
+            ExpectConnections expectConnections = method.getAnnotation(ExpectConnections.class);
+            if (expectConnections != null) {
+                ConnectionAssertionEngine.assertConnections(method, expectConnections, finalLog, finalFailures);
+            }
+
+            // ExpectTransactions
+            ExpectTransactions expectTransactions = method.getAnnotation(ExpectTransactions.class);
+            if (expectTransactions != null) {
+                TransactionAssertionEngine.assertTransactions(method, expectTransactions, finalLog, finalFailures);
+            }
+
             // ExpectQuery
             ExpectQuery expectQuery = method.getAnnotation(ExpectQuery.class);
             if (expectQuery != null) {
-                QueryAssertionEngine.assertQueries(method, expectQuery, finalLog, finalFailures);
+                queryListRequested = !QueryAssertionEngine.assertQueries(method, expectQuery, finalLog,
+                        finalFailures);
             }
 
             // ExpectNoDb
@@ -88,11 +235,82 @@ public class QueryKeeperExtension implements BeforeTestExecutionCallback, AfterT
                 DuplicateQueryAssertionEngine.assertNoExcessiveDuplicates(method, max, finalLog, finalFailures);
             }
 
+            // ExpectNoNPlusOne
+            ExpectNoNPlusOne expectNoNPlusOne = method.getAnnotation(ExpectNoNPlusOne.class);
+            if (expectNoNPlusOne != null) {
+                NPlusOneAssertionEngine.assertNoNPlusOne(method, expectNoNPlusOne, finalLog, finalFailures);
+            }
+
+            // ExpectBatch
+            ExpectBatch expectBatch = method.getAnnotation(ExpectBatch.class);
+            if (expectBatch != null) {
+                BatchAssertionEngine.assertBatching(method, expectBatch, finalLog, finalFailures);
+            }
+
+            // ExpectQueryLatency
+            ExpectQueryLatency expectQueryLatency = method.getAnnotation(ExpectQueryLatency.class);
+            if (expectQueryLatency != null) {
+                QueryLatencyAssertionEngine.assertLatency(method, expectQueryLatency, finalLog, finalFailures);
+            }
+
+            // ExpectRows
+            ExpectRows expectRows = method.getAnnotation(ExpectRows.class);
+            if (expectRows != null) {
+                RowsAssertionEngine.assertRows(method, expectRows, finalLog, finalFailures);
+            }
+
+            // ExpectNoFullScan
+            ExpectNoFullScan expectNoFullScan = method.getAnnotation(ExpectNoFullScan.class);
+            if (expectNoFullScan != null) {
+                ExplainAssertionEngine.assertNoFullScan(method, expectNoFullScan, finalLog, finalFailures);
+            }
+
+            // ExpectIndexUsage
+            ExpectIndexUsage expectIndexUsage = method.getAnnotation(ExpectIndexUsage.class);
+            if (expectIndexUsage != null) {
+                ExplainAssertionEngine.assertIndexUsage(method, expectIndexUsage, finalLog, finalFailures);
+            }
+
+            // ExpectBaseline (method or class level)
+            ExpectBaseline expectBaseline = method.getAnnotation(ExpectBaseline.class);
+            if (expectBaseline == null) {
+                expectBaseline = context.getRequiredTestClass().getAnnotation(ExpectBaseline.class);
+            }
+            if (expectBaseline != null) {
+                String testName = method.getParameterCount() > 0
+                        ? method.getName() + " " + context.getDisplayName()
+                        : method.getName();
+                BaselineAssertionEngine.assertBaseline(method, context.getRequiredTestClass(), testName,
+                        expectBaseline, finalLog, finalFailures);
+            }
+
+            // Suite report
+            SuiteReporter reporter = SuiteReporter.get(context);
+            if (reporter != null) {
+                int threshold = expectNoNPlusOne != null ? expectNoNPlusOne.threshold()
+                        : NPlusOneAssertionEngine.DEFAULT_THRESHOLD;
+                reporter.add(TestReport.capture(QueryKeeperContext.getCurrent(),
+                        context.getRequiredTestClass().getName(), method.getName(), context.getDisplayName(),
+                        elapsedNanos, threshold, finalFailures, context.getExecutionException().orElse(null)));
+            }
+
         } finally {
+            QueryKeeperContext queryKeeperContext = store.remove("queryKeeperContext", QueryKeeperContext.class);
+            if (queryKeeperContext != null) {
+                queryKeeperContext.close();
+            }
             QueryKeeperContext.clear();
+            store.put("invocationContext", QueryKeeperContext.openUnmeasured());
         }
 
-        log.info("\n{}", String.join("\n", finalLog));
+        Verbosity verbosity = Verbosity.get();
+        boolean failed = !finalFailures.isEmpty() || context.getExecutionException().isPresent();
+        if (verbosity != Verbosity.SILENT && log.isInfoEnabled()) {
+            log.info("\n{}", String.join("\n", finalLog));
+            if (verbosity.showsQueryList(failed, queryListRequested)) {
+                stream(log, queryList);
+            }
+        }
 
         if (!finalFailures.isEmpty()) {
             String summary = finalFailures.stream()
@@ -102,4 +320,49 @@ public class QueryKeeperExtension implements BeforeTestExecutionCallback, AfterT
             throw new AssertionError(summary);
         }
     }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        closeInvocationContext(context.getStore(NAMESPACE));
+    }
+
+    /**
+     * Closes the unmeasured context that owns the setup or teardown work of
+     * the current invocation and unbinds the thread.
+     */
+    private static void closeInvocationContext(ExtensionContext.Store store) {
+        QueryKeeperContext invocationContext = store.remove("invocationContext", QueryKeeperContext.class);
+        if (invocationContext != null) {
+            invocationContext.close();
+        }
+        QueryKeeperContext.clear();
+    }
+
+    /**
+     * Logs the query list in chunks of {@link #LOG_CHUNK_LINES} lines, so that
+     * it is never joined into one string.
+     */
+    private static void stream(Logger log, QueryListView queryList) {
+        StringBuilder chunk = new StringBuilder();
+        int[] lines = { 0 };
+        queryList.forEachLine(line -> {
+            chunk.append('\n').append(line);
+            if (++lines[0] == LOG_CHUNK_LINES) {
+                log.info("{}", chunk.toString());
+                chunk.setLength(0);
+                lines[0] = 0;
+            }
+        });
+        if (chunk.length() > 0) {
+            log.info("{}", chunk.toString());
+        }
+    }
+
+    /**
+     * Log lines and failures collected for one test.
+     */
+    private static final class TestResult {
+        final List<String> finalLog = new ArrayList<>();
+        final List<Throwable> finalFailures = new ArrayList<>();
+    }
 }
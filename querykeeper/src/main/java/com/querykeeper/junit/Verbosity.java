@@ -0,0 +1,64 @@
+package com.querykeeper.junit;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * How much {@link QueryKeeperExtension} logs after each test, set with the
+ * {@code querykeeper.verbosity} system property or {@link #set(Verbosity)}.
+ * Failed assertions are always reported through the test's
+ * {@code AssertionError}.
+ */
+public enum Verbosity {
+    /** Nothing is logged. */
+    SILENT,
+    /** One result line per assertion, never the query list. */
+    SUMMARY,
+    /**
+     * Result lines, plus the query list when the test fails or an
+     * {@code @ExpectQuery} without expectations asks for it (default).
+     */
+    ON_FAILURE,
+    /** Result lines and the query list of every test. */
+    FULL;
+
+    private static volatile Verbosity current = parse(System.getProperty("querykeeper.verbosity"));
+
+    public static Verbosity get() {
+        return current;
+    }
+
+    public static void set(Verbosity verbosity) {
+        current = verbosity;
+    }
+
+    boolean showsQueryList(boolean failed, boolean requested) {
+        switch (this) {
+        case FULL:
+            return true;
+        case ON_FAILURE:
+            return failed || requested;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Unknown values fall back to {@link #ON_FAILURE} with a warning, so a
+     * typo in the property does not fail the class initialization.
+     */
+    static Verbosity parse(String value) {
+        if (value == null || value.trim().isEmpty())
+            return ON_FAILURE;
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LoggerFactory.getLogger(Verbosity.class).warn(
+                    "[QueryKeeper] Unknown querykeeper.verbosity '{}', expected one of {}; using ON_FAILURE", value,
+                    Arrays.toString(values()));
+            return ON_FAILURE;
+        }
+    }
+}
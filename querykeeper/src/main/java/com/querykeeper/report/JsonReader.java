@@ -0,0 +1,185 @@
+package com.querykeeper.report;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON parser for reading back the per-test lines that
+ * {@link ReportWriter#json(TestReport)} writes. Objects become {@link Map}s,
+ * arrays {@link List}s and numbers {@link Double}s.
+ */
+final class JsonReader {
+
+    private final String text;
+    private int position;
+
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code text} is not a single JSON value
+     */
+    static Object parse(String text) {
+        JsonReader reader = new JsonReader(text);
+        Object value = reader.value();
+        reader.skipWhitespace();
+        if (reader.position != text.length())
+            throw reader.error("Unexpected trailing content");
+        return value;
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (position >= text.length())
+            throw error("Unexpected end of input");
+        char c = text.charAt(position);
+        switch (c) {
+        case '{':
+            return object();
+        case '[':
+            return array();
+        case '"':
+            return string();
+        case 't':
+            return literal("true", Boolean.TRUE);
+        case 'f':
+            return literal("false", Boolean.FALSE);
+        case 'n':
+            return literal("null", null);
+        default:
+            return number();
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        position++;
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"')
+                throw error("Expected a key");
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            object.put(key, value());
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> array = new ArrayList<>();
+        position++;
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+        while (true) {
+            array.add(value());
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        position++;
+        while (true) {
+            if (position >= text.length())
+                throw error("Unterminated string");
+            char c = text.charAt(position++);
+            if (c == '"')
+                return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (position >= text.length())
+                throw error("Unterminated escape");
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'b':
+                sb.append('\b');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'u':
+                if (position + 4 > text.length())
+                    throw error("Invalid unicode escape");
+                sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                position += 4;
+                break;
+            default:
+                sb.append(escaped);
+            }
+        }
+    }
+
+    private Double number() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0)
+            position++;
+        if (start == position)
+            throw error("Unexpected character '" + text.charAt(position) + "'");
+        try {
+            return Double.valueOf(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            throw error("Invalid number");
+        }
+    }
+
+    private Object literal(String literal, Object value) {
+        if (!text.startsWith(literal, position))
+            throw error("Expected " + literal);
+        position += literal.length();
+        return value;
+    }
+
+    private char peek() {
+        return position < text.length() ? text.charAt(position) : '\0';
+    }
+
+    private void expect(char c) {
+        if (peek() != c)
+            throw error("Expected '" + c + "'");
+        position++;
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+            position++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + position);
+    }
+}
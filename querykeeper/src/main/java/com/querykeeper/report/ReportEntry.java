@@ -0,0 +1,193 @@
+package com.querykeeper.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One test of the merged suite report, read back from the JSON line that
+ * {@link ReportWriter#json(TestReport)} rendered in whichever test JVM ran it.
+ */
+final class ReportEntry {
+
+    private final String json;
+    private final String className;
+    private final String methodName;
+    private final boolean failed;
+    private final double elapsedMs;
+    private final double dbMs;
+    private final double totalDbMs;
+    private final long statements;
+    private final long selects;
+    private final long inserts;
+    private final long updates;
+    private final long deletes;
+    private final long rows;
+    private final long duplicates;
+    private final List<NPlusOne> nPlusOnes;
+    private final List<String> failures;
+
+    private ReportEntry(String json, Map<String, Object> fields) {
+        this.json = json;
+        this.className = text(fields, "class");
+        this.methodName = text(fields, "method");
+        this.failed = "FAILED".equals(fields.get("status"));
+        this.elapsedMs = number(fields, "elapsedMs");
+        this.dbMs = number(fields, "dbMs");
+        this.totalDbMs = number(fields, "totalDbMs");
+        this.statements = (long) number(fields, "statements");
+        this.selects = (long) number(fields, "select");
+        this.inserts = (long) number(fields, "insert");
+        this.updates = (long) number(fields, "update");
+        this.deletes = (long) number(fields, "delete");
+        this.rows = (long) number(fields, "rows");
+        this.duplicates = (long) number(fields, "duplicates");
+
+        List<NPlusOne> findings = new ArrayList<>();
+        for (Object finding : list(fields, "nPlusOne")) {
+            if (finding instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> values = (Map<String, Object>) finding;
+                findings.add(new NPlusOne(text(values, "association"), (long) number(values, "executions"),
+                        text(values, "sql"), text(values, "caller")));
+            }
+        }
+        this.nPlusOnes = Collections.unmodifiableList(findings);
+
+        List<String> messages = new ArrayList<>();
+        for (Object failure : list(fields, "failures")) {
+            messages.add(String.valueOf(failure));
+        }
+        this.failures = Collections.unmodifiableList(messages);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code json} is not a test object
+     */
+    @SuppressWarnings("unchecked")
+    static ReportEntry parse(String json) {
+        Object value = JsonReader.parse(json);
+        if (!(value instanceof Map))
+            throw new IllegalArgumentException("Not a test report: " + json);
+        return new ReportEntry(json, (Map<String, Object>) value);
+    }
+
+    /**
+     * The line this entry was parsed from.
+     */
+    String getJson() {
+        return json;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    double getElapsedMs() {
+        return elapsedMs;
+    }
+
+    /**
+     * Statement execution time.
+     */
+    double getDbMs() {
+        return dbMs;
+    }
+
+    /**
+     * Execute, fetch and connection acquisition time.
+     */
+    double getTotalDbMs() {
+        return totalDbMs;
+    }
+
+    long getStatements() {
+        return statements;
+    }
+
+    long getSelects() {
+        return selects;
+    }
+
+    long getInserts() {
+        return inserts;
+    }
+
+    long getUpdates() {
+        return updates;
+    }
+
+    long getDeletes() {
+        return deletes;
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    long getDuplicates() {
+        return duplicates;
+    }
+
+    List<NPlusOne> getNPlusOnes() {
+        return nPlusOnes;
+    }
+
+    List<String> getFailures() {
+        return failures;
+    }
+
+    private static String text(Map<String, Object> fields, String name) {
+        Object value = fields.get(name);
+        return value != null ? value.toString() : "";
+    }
+
+    private static double number(Map<String, Object> fields, String name) {
+        Object value = fields.get(name);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private static List<?> list(Map<String, Object> fields, String name) {
+        Object value = fields.get(name);
+        return value instanceof List ? (List<?>) value : Collections.emptyList();
+    }
+
+    static final class NPlusOne {
+        private final String association;
+        private final long executions;
+        private final String sql;
+        private final String caller;
+
+        NPlusOne(String association, long executions, String sql, String caller) {
+            this.association = association;
+            this.executions = executions;
+            this.sql = sql;
+            this.caller = caller;
+        }
+
+        String getAssociation() {
+            return association;
+        }
+
+        long getExecutions() {
+            return executions;
+        }
+
+        String getSql() {
+            return sql;
+        }
+
+        String getCaller() {
+            return caller;
+        }
+    }
+}
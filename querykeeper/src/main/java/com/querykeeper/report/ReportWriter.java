@@ -0,0 +1,213 @@
+package com.querykeeper.report;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import com.querykeeper.collector.LatencyHistogram;
+import com.querykeeper.collector.QueryStatistics;
+
+/**
+ * Renders test reports as JSON and as a self-contained HTML page with
+ * sortable tables. Each test is rendered to one JSON line in the JVM that ran
+ * it; the suite files are rendered from those lines, so that the reports of
+ * several test JVMs can be merged.
+ */
+final class ReportWriter {
+
+    private static final int TOP = 20;
+
+    private ReportWriter() {
+    }
+
+    static String json(TestReport report) {
+        QueryStatistics statistics = report.getStatistics();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"class\":").append(quote(report.getClassName()))
+                .append(",\"method\":").append(quote(report.getMethodName()))
+                .append(",\"displayName\":").append(quote(report.getDisplayName()))
+                .append(",\"status\":").append(quote(report.isFailed() ? "FAILED" : "PASSED"))
+                .append(",\"elapsedMs\":").append(ms(report.getElapsedNanos()))
+                .append(",\"dbMs\":").append(ms(statistics.getDbNanos()))
+                .append(",\"totalDbMs\":").append(ms(statistics.getTotalDbNanos()))
+                .append(",\"statements\":").append(statistics.getStatements())
+                .append(",\"executions\":").append(statistics.getExecutions())
+                .append(",\"select\":").append(statistics.getSelects())
+                .append(",\"insert\":").append(statistics.getInserts())
+                .append(",\"update\":").append(statistics.getUpdates())
+                .append(",\"delete\":").append(statistics.getDeletes())
+                .append(",\"other\":").append(statistics.getOthers())
+                .append(",\"rows\":").append(report.getRows())
+                .append(",\"duplicates\":").append(report.getDuplicates())
+                .append(",\"nPlusOne\":[");
+        for (int i = 0; i < report.getNPlusOnes().size(); i++) {
+            TestReport.NPlusOne finding = report.getNPlusOnes().get(i);
+            sb.append(i > 0 ? "," : "")
+                    .append("{\"association\":").append(quote(finding.getAssociation()))
+                    .append(",\"executions\":").append(finding.getExecutions())
+                    .append(",\"sql\":").append(quote(finding.getSql()))
+                    .append(",\"caller\":").append(quote(finding.getCaller())).append('}');
+        }
+        sb.append("],\"failures\":[");
+        for (int i = 0; i < report.getFailures().size(); i++) {
+            sb.append(i > 0 ? "," : "").append(quote(report.getFailures().get(i)));
+        }
+        return sb.append("]}").toString();
+    }
+
+    static String json(List<ReportEntry> reports) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n\"generatedAt\":").append(quote(Instant.now().toString()))
+                .append(",\n\"summary\":{\"tests\":").append(reports.size())
+                .append(",\"failed\":").append(reports.stream().filter(ReportEntry::isFailed).count())
+                .append(",\"statements\":").append(reports.stream().mapToLong(ReportEntry::getStatements).sum())
+                .append(",\"dbMs\":").append(ms(reports.stream().mapToDouble(ReportEntry::getDbMs).sum()))
+                .append(",\"totalDbMs\":").append(ms(reports.stream().mapToDouble(ReportEntry::getTotalDbMs).sum()))
+                .append(",\"duplicates\":").append(reports.stream().mapToLong(ReportEntry::getDuplicates).sum())
+                .append(",\"nPlusOne\":").append(reports.stream().mapToLong(r -> r.getNPlusOnes().size()).sum())
+                .append("},\n\"tests\":[\n");
+        for (int i = 0; i < reports.size(); i++) {
+            sb.append(i > 0 ? ",\n" : "").append(reports.get(i).getJson());
+        }
+        return sb.append("\n]}\n").toString();
+    }
+
+    static String html(List<ReportEntry> reports) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\"><title>QueryKeeper Report</title>\n")
+                .append("<style>body{font-family:sans-serif;margin:2em}table{border-collapse:collapse;margin-bottom:2em}")
+                .append("th,td{border:1px solid #ccc;padding:4px 8px;text-align:left;vertical-align:top}")
+                .append("th{background:#eee;cursor:pointer}td.n{text-align:right}tr.failed td{background:#fdd}")
+                .append("code{font-size:90%}</style>\n</head><body>\n<h1>QueryKeeper Report</h1>\n");
+
+        long failed = reports.stream().filter(ReportEntry::isFailed).count();
+        sb.append("<p>").append(reports.size()).append(" tests, ").append(failed).append(" failed, ")
+                .append(reports.stream().mapToLong(ReportEntry::getStatements).sum())
+                .append(" statements, ")
+                .append(ms(reports.stream().mapToDouble(ReportEntry::getTotalDbMs).sum()))
+                .append(" ms DB time. Generated ").append(escape(Instant.now().toString())).append(".</p>\n");
+
+        List<ReportEntry> byQueries = new ArrayList<>(reports);
+        byQueries.sort(Comparator.comparingLong(ReportEntry::getStatements).reversed());
+        sb.append("<h2>Worst tests by query count</h2>\n");
+        testTable(sb, byQueries.subList(0, Math.min(TOP, byQueries.size())));
+
+        List<ReportEntry> byDbTime = new ArrayList<>(reports);
+        byDbTime.sort(Comparator.comparingDouble(ReportEntry::getTotalDbMs).reversed());
+        sb.append("<h2>Worst tests by DB time</h2>\n");
+        testTable(sb, byDbTime.subList(0, Math.min(TOP, byDbTime.size())));
+
+        sb.append("<h2>N+1 findings</h2>\n<table class=\"sortable\"><thead><tr><th>Test</th><th>Association</th>")
+                .append("<th>Executions</th><th>SQL</th><th>Caller</th></tr></thead><tbody>\n");
+        for (ReportEntry report : reports) {
+            for (ReportEntry.NPlusOne finding : report.getNPlusOnes()) {
+                sb.append("<tr><td>").append(escape(testName(report))).append("</td><td>")
+                        .append(escape(finding.getAssociation())).append("</td>")
+                        .append(number(finding.getExecutions())).append("<td><code>").append(escape(finding.getSql()))
+                        .append("</code></td><td>").append(escape(finding.getCaller())).append("</td></tr>\n");
+            }
+        }
+        sb.append("</tbody></table>\n");
+
+        sb.append("<h2>All tests</h2>\n");
+        testTable(sb, reports);
+
+        sb.append("<script>\n")
+                .append("document.querySelectorAll('table.sortable th').forEach(function (th) {\n")
+                .append("  th.addEventListener('click', function () {\n")
+                .append("    var body = th.closest('table').tBodies[0], i = th.cellIndex;\n")
+                .append("    var desc = th.dataset.order !== 'desc'; th.dataset.order = desc ? 'desc' : 'asc';\n")
+                .append("    var rows = Array.prototype.slice.call(body.rows);\n")
+                .append("    rows.sort(function (a, b) {\n")
+                .append("      var x = a.cells[i].textContent, y = b.cells[i].textContent;\n")
+                .append("      var c = (isNaN(x) || isNaN(y)) ? x.localeCompare(y) : x - y;\n")
+                .append("      return desc ? -c : c;\n")
+                .append("    });\n")
+                .append("    rows.forEach(function (row) { body.appendChild(row); });\n")
+                .append("  });\n")
+                .append("});\n</script>\n</body></html>\n");
+        return sb.toString();
+    }
+
+    private static void testTable(StringBuilder sb, List<ReportEntry> reports) {
+        sb.append("<table class=\"sortable\"><thead><tr><th>Test</th><th>Status</th><th>Statements</th>")
+                .append("<th>SELECT</th><th>INSERT</th><th>UPDATE</th><th>DELETE</th><th>Rows</th>")
+                .append("<th>Duplicates</th><th>N+1</th><th>DB ms</th><th>Total ms</th><th>Failures</th>")
+                .append("</tr></thead><tbody>\n");
+        for (ReportEntry report : reports) {
+            sb.append(report.isFailed() ? "<tr class=\"failed\">" : "<tr>")
+                    .append("<td>").append(escape(testName(report))).append("</td>")
+                    .append("<td>").append(report.isFailed() ? "FAILED" : "PASSED").append("</td>")
+                    .append(number(report.getStatements()))
+                    .append(number(report.getSelects()))
+                    .append(number(report.getInserts()))
+                    .append(number(report.getUpdates()))
+                    .append(number(report.getDeletes()))
+                    .append(number(report.getRows()))
+                    .append(number(report.getDuplicates()))
+                    .append(number(report.getNPlusOnes().size()))
+                    .append("<td class=\"n\">").append(ms(report.getTotalDbMs())).append("</td>")
+                    .append("<td class=\"n\">").append(ms(report.getElapsedMs())).append("</td>")
+                    .append("<td>").append(escape(String.join("\n", report.getFailures())).replace("\n", "<br>"))
+                    .append("</td></tr>\n");
+        }
+        sb.append("</tbody></table>\n");
+    }
+
+    private static String testName(ReportEntry report) {
+        String className = report.getClassName();
+        return className.substring(className.lastIndexOf('.') + 1) + "#" + report.getMethodName();
+    }
+
+    private static String number(long value) {
+        return "<td class=\"n\">" + value + "</td>";
+    }
+
+    private static String ms(long nanos) {
+        return ms(LatencyHistogram.toMs(Math.max(0, nanos)));
+    }
+
+    private static String ms(double ms) {
+        return String.format(Locale.ROOT, "%.3f", ms);
+    }
+
+    private static String quote(String value) {
+        if (value == null)
+            return "null";
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20)
+                    sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                else
+                    sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String escape(String value) {
+        if (value == null)
+            return "";
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
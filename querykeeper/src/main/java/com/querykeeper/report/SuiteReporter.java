@@ -0,0 +1,168 @@
+package com.querykeeper.report;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects a {@link TestReport} per test and writes
+ * {@code querykeeper-report.json} and {@code querykeeper-report.html} when the
+ * test run ends.
+ *
+ * One instance lives in the root {@link ExtensionContext.Store}, which closes
+ * it after the last test. Reports are rendered and buffered on a single
+ * background thread, so the test threads only hand them over.
+ *
+ * Each test JVM writes its tests to a part file of its own
+ * ({@code querykeeper-report-part-<fork>.jsonl}, one JSON line per test) and
+ * then merges all part files of the directory into the suite files under a
+ * file lock. With {@code maxParallelForks} or {@code forkEvery}, the JVM that
+ * finishes last therefore writes the report of the whole run. Part files are
+ * not removed, so the build should clear the directory before the tests run.
+ */
+public final class SuiteReporter implements ExtensionContext.Store.CloseableResource {
+
+    /**
+     * Set to {@code false} to disable the report.
+     */
+    public static final String ENABLED_PROPERTY = "querykeeper.report.enabled";
+    public static final String DIRECTORY_PROPERTY = "querykeeper.report.dir";
+    public static final String DEFAULT_DIRECTORY = "build/reports/querykeeper";
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace
+            .create(SuiteReporter.class);
+
+    static final String PART_PREFIX = "querykeeper-report-part-";
+    static final String PART_SUFFIX = ".jsonl";
+
+    private static final Logger log = LoggerFactory.getLogger(SuiteReporter.class);
+
+    private final Path directory;
+    private final String fork;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "querykeeper-report");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only accessed on the writer thread
+    private final List<String> renderedTests = new ArrayList<>();
+
+    SuiteReporter(Path directory) {
+        this(directory, forkId());
+    }
+
+    SuiteReporter(Path directory, String fork) {
+        this.directory = directory;
+        this.fork = fork;
+    }
+
+    /**
+     * Returns the reporter of the current test run, or {@code null} if the
+     * report is disabled.
+     */
+    public static SuiteReporter get(ExtensionContext context) {
+        if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true")))
+            return null;
+        return context.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(SuiteReporter.class,
+                key -> new SuiteReporter(Paths.get(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY))),
+                SuiteReporter.class);
+    }
+
+    /**
+     * Queues {@code report}; returns immediately.
+     */
+    public void add(TestReport report) {
+        writer.execute(() -> renderedTests.add(ReportWriter.json(report)));
+    }
+
+    /**
+     * Waits for the queued reports, writes the part file of this JVM and
+     * merges the JSON and HTML files.
+     */
+    @Override
+    public void close() throws Exception {
+        try {
+            writer.submit(this::write).get();
+        } finally {
+            writer.shutdown();
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private Void write() throws IOException {
+        if (renderedTests.isEmpty())
+            return null;
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(PART_PREFIX + fork + PART_SUFFIX), renderedTests, StandardCharsets.UTF_8);
+        merge(directory);
+        return null;
+    }
+
+    /**
+     * Rewrites the suite files from every part file in {@code directory}. The
+     * lock keeps JVMs that finish at the same time from interleaving.
+     */
+    static void merge(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(".querykeeper-report.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = channel.lock()) {
+            List<Path> parts = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                    PART_PREFIX + "*" + PART_SUFFIX)) {
+                stream.forEach(parts::add);
+            }
+            parts.sort(null);
+
+            List<ReportEntry> reports = new ArrayList<>();
+            for (Path part : parts) {
+                for (String line : Files.readAllLines(part, StandardCharsets.UTF_8)) {
+                    if (line.isEmpty())
+                        continue;
+                    try {
+                        reports.add(ReportEntry.parse(line));
+                    } catch (IllegalArgumentException e) {
+                        log.warn("[QueryKeeper] Skipping unreadable report line in {}: {}", part, e.getMessage());
+                    }
+                }
+            }
+
+            Path html = directory.resolve("querykeeper-report.html");
+            replace(directory.resolve("querykeeper-report.json"), ReportWriter.json(reports));
+            replace(html, ReportWriter.html(reports));
+            log.info("[QueryKeeper] Report of {} tests from {} test JVM(s) written to {}", reports.size(),
+                    parts.size(), html.toAbsolutePath());
+        }
+    }
+
+    private static void replace(Path path, String content) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temporary, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Names the part file of this JVM after its Gradle test worker. Outside
+     * Gradle forks a single part is overwritten by every run.
+     */
+    private static String forkId() {
+        String worker = System.getProperty("org.gradle.test.worker");
+        return worker != null ? "worker-" + worker : "main";
+    }
+}
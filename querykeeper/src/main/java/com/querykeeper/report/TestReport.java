@@ -0,0 +1,145 @@
+package com.querykeeper.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.querykeeper.collector.QueryAggregates;
+import com.querykeeper.collector.QueryKeeperContext;
+import com.querykeeper.collector.QueryStatistics;
+import com.querykeeper.engine.NPlusOneAssertionEngine;
+
+/**
+ * Immutable summary of one test for the suite report, taken on the test
+ * thread before its context is closed.
+ */
+public final class TestReport {
+
+    private final String className;
+    private final String methodName;
+    private final String displayName;
+    private final long elapsedNanos;
+    private final QueryStatistics statistics;
+    private final long rows;
+    private final long duplicates;
+    private final List<NPlusOne> nPlusOnes;
+    private final List<String> failures;
+
+    private TestReport(String className, String methodName, String displayName, long elapsedNanos,
+            QueryStatistics statistics, long rows, long duplicates, List<NPlusOne> nPlusOnes, List<String> failures) {
+        this.className = className;
+        this.methodName = methodName;
+        this.displayName = displayName;
+        this.elapsedNanos = elapsedNanos;
+        this.statistics = statistics;
+        this.rows = rows;
+        this.duplicates = duplicates;
+        this.nPlusOnes = Collections.unmodifiableList(nPlusOnes);
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @param nPlusOneThreshold executions from one call site above which a
+     *                          SELECT with varying parameters is reported as
+     *                          N+1
+     * @param failures          QueryKeeper assertion failures of the test
+     * @param testFailure       exception thrown by the test itself, or
+     *                          {@code null}
+     */
+    public static TestReport capture(QueryKeeperContext context, String className, String methodName,
+            String displayName, long elapsedNanos, int nPlusOneThreshold, List<Throwable> failures,
+            Throwable testFailure) {
+        QueryAggregates aggregates = context.getAggregates();
+        List<NPlusOne> nPlusOnes = new ArrayList<>();
+        for (QueryAggregates.CallSiteStats site : NPlusOneAssertionEngine.findSuspects(aggregates,
+                nPlusOneThreshold)) {
+            nPlusOnes.add(new NPlusOne(NPlusOneAssertionEngine.association(site.getSample().getMetadata()),
+                    site.getExecutions(), site.getSample().sql, site.getSample().caller));
+        }
+        List<String> messages = new ArrayList<>();
+        for (Throwable failure : failures) {
+            messages.add(failure.getMessage());
+        }
+        if (testFailure != null) {
+            messages.add(testFailure.toString());
+        }
+        return new TestReport(className, methodName, displayName, elapsedNanos, context.getStatistics(),
+                aggregates.getRowsFetched(), context.getDuplicateTracker().getTotalDuplicates(), nPlusOnes, messages);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public QueryStatistics getStatistics() {
+        return statistics;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public List<NPlusOne> getNPlusOnes() {
+        return nPlusOnes;
+    }
+
+    /**
+     * QueryKeeper failures and the test's own exception, if any.
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    public boolean isFailed() {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * One N+1 pattern: a SELECT repeated from one call site.
+     */
+    public static final class NPlusOne {
+        private final String association;
+        private final long executions;
+        private final String sql;
+        private final String caller;
+
+        NPlusOne(String association, long executions, String sql, String caller) {
+            this.association = association;
+            this.executions = executions;
+            this.sql = sql;
+            this.caller = caller;
+        }
+
+        public String getAssociation() {
+            return association;
+        }
+
+        public long getExecutions() {
+            return executions;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getCaller() {
+            return caller;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.querykeeper.runtime;
+
+/**
+ * What to do when a request exceeds its query budget.
+ */
+public enum BudgetAction {
+    /** Log a warning once the request completes. */
+    LOG,
+    /** Increment the {@code querykeeper.budget.exceeded} meter. */
+    METRIC,
+    /** Fail further statements of the request with an {@code SQLException}. */
+    REJECT
+}
@@ -0,0 +1,39 @@
+package com.querykeeper.runtime;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of the requests measured for one endpoint.
+ */
+public final class EndpointStats {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder dbNanos = new LongAdder();
+    private final LongAdder budgetExceeded = new LongAdder();
+
+    void add(RuntimeQueryScope scope, boolean exceeded) {
+        requests.increment();
+        queries.add(scope.getQueryCount());
+        dbNanos.add(scope.getDbNanos());
+        if (exceeded)
+            budgetExceeded.increment();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public long getDbTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(dbNanos.sum());
+    }
+
+    public long getBudgetExceeded() {
+        return budgetExceeded.sum();
+    }
+}
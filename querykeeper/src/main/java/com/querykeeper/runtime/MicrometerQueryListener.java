@@ -0,0 +1,39 @@
+package com.querykeeper.runtime;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Publishes per-request query counts and DB time, and budget violations, to
+ * Micrometer.
+ *
+ * <ul>
+ * <li>{@code querykeeper.request.queries} — distribution of statements per
+ * request</li>
+ * <li>{@code querykeeper.request.db.time} — JDBC time per request</li>
+ * <li>{@code querykeeper.budget.exceeded} — requests over budget with action
+ * {@code METRIC}</li>
+ * </ul>
+ */
+public class MicrometerQueryListener implements RuntimeQueryListener {
+
+    private final MeterRegistry registry;
+
+    public MicrometerQueryListener(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void onRequestCompleted(RuntimeQueryScope scope) {
+        registry.summary("querykeeper.request.queries", "endpoint", scope.getEndpoint())
+                .record(scope.getQueryCount());
+        registry.timer("querykeeper.request.db.time", "endpoint", scope.getEndpoint())
+                .record(scope.getDbNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onBudgetExceeded(RuntimeQueryScope scope) {
+        registry.counter("querykeeper.budget.exceeded", "endpoint", scope.getEndpoint()).increment();
+    }
+}
@@ -0,0 +1,64 @@
+package com.querykeeper.runtime;
+
+/**
+ * Query limits for the requests of one endpoint. Negative values disable a
+ * limit.
+ */
+public class QueryBudget {
+
+    private String pattern;
+    private String method;
+    private int maxQueries = -1;
+    private long maxDbTimeMs = -1;
+    private BudgetAction action = BudgetAction.LOG;
+
+    /**
+     * Ant-style path pattern, e.g. {@code /api/orders/**}.
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * HTTP method to match, or {@code null} for any.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public int getMaxQueries() {
+        return maxQueries;
+    }
+
+    public void setMaxQueries(int maxQueries) {
+        this.maxQueries = maxQueries;
+    }
+
+    public long getMaxDbTimeMs() {
+        return maxDbTimeMs;
+    }
+
+    public void setMaxDbTimeMs(long maxDbTimeMs) {
+        this.maxDbTimeMs = maxDbTimeMs;
+    }
+
+    public BudgetAction getAction() {
+        return action;
+    }
+
+    public void setAction(BudgetAction action) {
+        this.action = action;
+    }
+
+    boolean isUnlimited() {
+        return maxQueries < 0 && maxDbTimeMs < 0;
+    }
+}
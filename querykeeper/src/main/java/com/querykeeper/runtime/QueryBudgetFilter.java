@@ -0,0 +1,46 @@
+package com.querykeeper.runtime;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Servlet filter that measures the queries of each request against its budget.
+ */
+public class QueryBudgetFilter extends OncePerRequestFilter implements Ordered {
+
+    private final RuntimeQueryMonitor monitor;
+
+    public QueryBudgetFilter(RuntimeQueryMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RuntimeQueryScope scope = monitor.begin(request.getMethod(), request.getRequestURI());
+        if (scope == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        RuntimeQueryScope previous = scope.bind();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RuntimeQueryScope.restore(previous);
+            monitor.end(scope);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+}
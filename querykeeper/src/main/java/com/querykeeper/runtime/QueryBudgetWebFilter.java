@@ -0,0 +1,104 @@
+package com.querykeeper.runtime;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoOperator;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+/**
+ * WebFlux filter that measures the queries of each request against its budget.
+ *
+ * The scope travels in the Reactor {@code Context} of the request. It is bound
+ * to the thread while the chain is assembled and subscribed, around every
+ * signal of the operators that see it in their context, and around tasks
+ * scheduled from a bound thread, so blocking JDBC calls moved to
+ * {@code Schedulers.boundedElastic()} are counted for the request.
+ *
+ * The schedule and operator hooks are JVM-wide and apply to every pipeline,
+ * measured or not. They are installed by the first filter instance and
+ * removed when the last one is destroyed.
+ */
+public class QueryBudgetWebFilter implements WebFilter, Ordered, DisposableBean {
+
+    private static final String HOOK_KEY = "querykeeper";
+
+    private static final Object HOOK_LOCK = new Object();
+    private static int hookUsers;
+
+    private final RuntimeQueryMonitor monitor;
+    private final AtomicBoolean destroyed = new AtomicBoolean();
+
+    public QueryBudgetWebFilter(RuntimeQueryMonitor monitor) {
+        this.monitor = monitor;
+        synchronized (HOOK_LOCK) {
+            if (hookUsers++ == 0) {
+                Schedulers.onScheduleHook(HOOK_KEY, RuntimeQueryScope::wrap);
+                Hooks.onEachOperator(HOOK_KEY, Operators.lift(ScopePropagatingSubscriber::wrap));
+            }
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        RuntimeQueryScope scope = monitor.begin(exchange.getRequest().getMethodValue(),
+                exchange.getRequest().getURI().getPath());
+        if (scope == null)
+            return chain.filter(exchange);
+
+        return new ScopeBindingMono(Mono.defer(() -> chain.filter(exchange)), scope)
+                .contextWrite(Context.of(RuntimeQueryScope.class, scope))
+                .doFinally(signal -> monitor.end(scope));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    @Override
+    public void destroy() {
+        if (!destroyed.compareAndSet(false, true))
+            return;
+        synchronized (HOOK_LOCK) {
+            if (--hookUsers == 0) {
+                Schedulers.resetOnScheduleHook(HOOK_KEY);
+                Hooks.resetOnEachOperator(HOOK_KEY);
+            }
+        }
+    }
+
+    /**
+     * Binds the scope while the chain is subscribed, which is when handlers are
+     * invoked and {@code subscribeOn} schedules its work.
+     */
+    private static final class ScopeBindingMono extends MonoOperator<Void, Void> {
+
+        private final RuntimeQueryScope scope;
+
+        ScopeBindingMono(Mono<Void> source, RuntimeQueryScope scope) {
+            super(source);
+            this.scope = scope;
+        }
+
+        @Override
+        public void subscribe(CoreSubscriber<? super Void> actual) {
+            RuntimeQueryScope previous = scope.bind();
+            try {
+                source.subscribe(actual);
+            } finally {
+                RuntimeQueryScope.restore(previous);
+            }
+        }
+    }
+}
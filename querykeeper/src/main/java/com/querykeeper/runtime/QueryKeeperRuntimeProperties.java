@@ -0,0 +1,82 @@
+package com.querykeeper.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the production runtime mode, bound from
+ * {@code querykeeper.runtime.*}.
+ *
+ * <pre>
+ * querykeeper.runtime.enabled=true
+ * querykeeper.runtime.sample-rate=0.1
+ * querykeeper.runtime.default-budget.max-queries=50
+ * querykeeper.runtime.endpoints[0].pattern=/api/orders/**
+ * querykeeper.runtime.endpoints[0].max-queries=10
+ * querykeeper.runtime.endpoints[0].action=REJECT
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "querykeeper.runtime")
+public class QueryKeeperRuntimeProperties {
+
+    private boolean enabled;
+    private double sampleRate = 1.0;
+    private boolean captureQueries;
+    private QueryBudget defaultBudget = new QueryBudget();
+    private List<QueryBudget> endpoints = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Fraction of requests (0.0 - 1.0) that are measured and held to a budget.
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Whether queries outside of a test keep full {@code QueryLog}s. Off by
+     * default, so production requests only update counters.
+     */
+    public boolean isCaptureQueries() {
+        return captureQueries;
+    }
+
+    public void setCaptureQueries(boolean captureQueries) {
+        this.captureQueries = captureQueries;
+    }
+
+    /**
+     * Budget for requests that match none of {@link #getEndpoints()}.
+     */
+    public QueryBudget getDefaultBudget() {
+        return defaultBudget;
+    }
+
+    public void setDefaultBudget(QueryBudget defaultBudget) {
+        this.defaultBudget = defaultBudget;
+    }
+
+    /**
+     * Per-endpoint budgets, first match wins.
+     */
+    public List<QueryBudget> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<QueryBudget> endpoints) {
+        this.endpoints = endpoints;
+    }
+}
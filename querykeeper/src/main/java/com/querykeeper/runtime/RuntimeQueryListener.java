@@ -0,0 +1,14 @@
+package com.querykeeper.runtime;
+
+/**
+ * Receives the outcome of every measured request. Beans of this type are picked
+ * up by the runtime auto-configuration.
+ */
+public interface RuntimeQueryListener {
+
+    default void onRequestCompleted(RuntimeQueryScope scope) {
+    }
+
+    default void onBudgetExceeded(RuntimeQueryScope scope) {
+    }
+}
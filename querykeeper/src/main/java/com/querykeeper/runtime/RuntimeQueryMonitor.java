@@ -0,0 +1,82 @@
+package com.querykeeper.runtime;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.AntPathMatcher;
+
+/**
+ * Opens a {@link RuntimeQueryScope} per sampled request, resolves its budget
+ * and aggregates the results per endpoint.
+ */
+public class RuntimeQueryMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(RuntimeQueryMonitor.class);
+
+    static final String DEFAULT_ENDPOINT = "default";
+
+    private final QueryKeeperRuntimeProperties properties;
+    private final List<RuntimeQueryListener> listeners;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, EndpointStats> endpointStats = new ConcurrentHashMap<>();
+
+    public RuntimeQueryMonitor(QueryKeeperRuntimeProperties properties, List<RuntimeQueryListener> listeners) {
+        this.properties = properties;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Returns a new scope for the request, or {@code null} if it is not sampled
+     * or no budget applies.
+     */
+    public RuntimeQueryScope begin(String method, String path) {
+        double sampleRate = properties.getSampleRate();
+        if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate))
+            return null;
+
+        for (QueryBudget budget : properties.getEndpoints()) {
+            if (matches(budget, method, path))
+                return new RuntimeQueryScope(budget.getPattern(), budget);
+        }
+        return new RuntimeQueryScope(DEFAULT_ENDPOINT, properties.getDefaultBudget());
+    }
+
+    public void end(RuntimeQueryScope scope) {
+        boolean exceeded = scope.isOverBudget();
+        endpointStats.computeIfAbsent(scope.getEndpoint(), key -> new EndpointStats()).add(scope, exceeded);
+
+        for (RuntimeQueryListener listener : listeners) {
+            listener.onRequestCompleted(scope);
+        }
+        if (!exceeded)
+            return;
+
+        if (scope.getBudget().getAction() == BudgetAction.METRIC) {
+            for (RuntimeQueryListener listener : listeners) {
+                listener.onBudgetExceeded(scope);
+            }
+        } else {
+            log.warn("[QueryKeeper] ▶ Query budget exceeded for {}{}: {}", scope.getEndpoint(),
+                    scope.isRejected() ? " (rejected)" : "", scope.describeUsage());
+        }
+    }
+
+    /**
+     * Totals per endpoint pattern; unmatched requests are reported as
+     * {@code default}.
+     */
+    public Map<String, EndpointStats> getEndpointStats() {
+        return Collections.unmodifiableMap(endpointStats);
+    }
+
+    private boolean matches(QueryBudget budget, String method, String path) {
+        if (budget.getMethod() != null && !budget.getMethod().equalsIgnoreCase(method))
+            return false;
+        return budget.getPattern() != null && pathMatcher.match(budget.getPattern(), path);
+    }
+}
@@ -0,0 +1,117 @@
+package com.querykeeper.runtime;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lightweight per-request counters: number of statements and JDBC time. Bound
+ * to the threads serving the request, like the test context.
+ */
+public final class RuntimeQueryScope {
+
+    private static final ThreadLocal<RuntimeQueryScope> CURRENT = new ThreadLocal<>();
+
+    private final String endpoint;
+    private final QueryBudget budget;
+    private final long maxDbNanos;
+    private final AtomicInteger queries = new AtomicInteger();
+    private final AtomicLong dbNanos = new AtomicLong();
+    private volatile boolean rejected;
+
+    RuntimeQueryScope(String endpoint, QueryBudget budget) {
+        this.endpoint = endpoint;
+        this.budget = budget;
+        this.maxDbNanos = budget.getMaxDbTimeMs() < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(budget.getMaxDbTimeMs());
+    }
+
+    public static RuntimeQueryScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds this scope to the calling thread and returns the previous binding,
+     * to be passed to {@link #restore(RuntimeQueryScope)}.
+     */
+    public RuntimeQueryScope bind() {
+        RuntimeQueryScope previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    public static void restore(RuntimeQueryScope previous) {
+        if (previous == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(previous);
+    }
+
+    /**
+     * Runs {@code task} with the caller's scope bound, if any.
+     */
+    public static Runnable wrap(Runnable task) {
+        RuntimeQueryScope captured = CURRENT.get();
+        if (captured == null)
+            return task;
+        return () -> {
+            RuntimeQueryScope previous = captured.bind();
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Called before a statement is sent. Fails it if the request already spent
+     * its budget and the budget action is {@link BudgetAction#REJECT}.
+     */
+    public void beforeExecute() throws SQLException {
+        if (budget.getAction() != BudgetAction.REJECT)
+            return;
+        boolean exhausted = (budget.getMaxQueries() >= 0 && queries.get() >= budget.getMaxQueries())
+                || (maxDbNanos >= 0 && dbNanos.get() > maxDbNanos);
+        if (!exhausted)
+            return;
+        rejected = true;
+        throw new SQLException("[QueryKeeper] Query budget exceeded for " + endpoint + ": " + describeUsage(),
+                "53400");
+    }
+
+    public void afterExecute(int statements, long nanos) {
+        queries.addAndGet(statements);
+        dbNanos.addAndGet(nanos);
+    }
+
+    public boolean isOverBudget() {
+        return (budget.getMaxQueries() >= 0 && queries.get() > budget.getMaxQueries())
+                || (maxDbNanos >= 0 && dbNanos.get() > maxDbNanos);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public QueryBudget getBudget() {
+        return budget;
+    }
+
+    public int getQueryCount() {
+        return queries.get();
+    }
+
+    public long getDbNanos() {
+        return dbNanos.get();
+    }
+
+    public boolean isRejected() {
+        return rejected;
+    }
+
+    String describeUsage() {
+        return queries.get() + " queries (max " + budget.getMaxQueries() + "), "
+                + TimeUnit.NANOSECONDS.toMillis(dbNanos.get()) + " ms DB time (max " + budget.getMaxDbTimeMs() + " ms)";
+    }
+}
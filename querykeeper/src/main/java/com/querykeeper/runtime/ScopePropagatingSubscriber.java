@@ -0,0 +1,82 @@
+package com.querykeeper.runtime;
+
+import org.reactivestreams.Subscription;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.Scannable;
+import reactor.util.context.Context;
+
+/**
+ * Binds the {@link RuntimeQueryScope} found in the subscriber's Reactor
+ * {@code Context} around every signal, so operators running on any thread
+ * (Netty event loops, {@code publishOn}, {@code flatMap} inners) see the scope
+ * of the request they belong to.
+ *
+ * The subscription is passed through unchanged to keep operator fusion.
+ */
+final class ScopePropagatingSubscriber<T> implements CoreSubscriber<T> {
+
+    private final CoreSubscriber<? super T> actual;
+    private final RuntimeQueryScope scope;
+
+    private ScopePropagatingSubscriber(CoreSubscriber<? super T> actual, RuntimeQueryScope scope) {
+        this.actual = actual;
+        this.scope = scope;
+    }
+
+    /**
+     * Lifter for {@code Hooks.onEachOperator}: leaves subscribers without a
+     * scope in their context untouched.
+     */
+    static <T> CoreSubscriber<? super T> wrap(Scannable operator, CoreSubscriber<? super T> actual) {
+        RuntimeQueryScope scope = actual.currentContext().getOrDefault(RuntimeQueryScope.class, null);
+        if (scope == null)
+            return actual;
+        return new ScopePropagatingSubscriber<>(actual, scope);
+    }
+
+    @Override
+    public Context currentContext() {
+        return actual.currentContext();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        RuntimeQueryScope previous = scope.bind();
+        try {
+            actual.onSubscribe(subscription);
+        } finally {
+            RuntimeQueryScope.restore(previous);
+        }
+    }
+
+    @Override
+    public void onNext(T value) {
+        RuntimeQueryScope previous = scope.bind();
+        try {
+            actual.onNext(value);
+        } finally {
+            RuntimeQueryScope.restore(previous);
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        RuntimeQueryScope previous = scope.bind();
+        try {
+            actual.onError(error);
+        } finally {
+            RuntimeQueryScope.restore(previous);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        RuntimeQueryScope previous = scope.bind();
+        try {
+            actual.onComplete();
+        } finally {
+            RuntimeQueryScope.restore(previous);
+        }
+    }
+}
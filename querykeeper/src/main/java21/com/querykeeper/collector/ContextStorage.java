@@ -0,0 +1,59 @@
+package com.querykeeper.collector;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-thread storage behind {@link QueryKeeperContext}, Java 21 variant.
+ *
+ * Platform threads use a plain {@code ThreadLocal}, as on Java 8. Virtual
+ * threads read an {@code InheritableThreadLocal} instead, so a virtual thread
+ * started while a test context is bound (for example by
+ * {@code Executors.newVirtualThreadPerTaskExecutor()}) records into that
+ * context without explicit wrapping. Unbound virtual threads share one fallback
+ * context rather than allocating one per thread; it is replaced only when no
+ * context is active, never while other tests may still be recording.
+ */
+final class ContextStorage {
+
+    private static final ThreadLocal<QueryKeeperContext> BOUND = new ThreadLocal<>();
+    private static final InheritableThreadLocal<QueryKeeperContext> INHERITED = new InheritableThreadLocal<>();
+    private static final ThreadLocal<QueryKeeperContext> FALLBACK = ThreadLocal.withInitial(QueryKeeperContext::newFallback);
+    private static final AtomicReference<QueryKeeperContext> VIRTUAL_FALLBACK = new AtomicReference<>(
+            QueryKeeperContext.newFallback());
+
+    private ContextStorage() {
+    }
+
+    static QueryKeeperContext bound() {
+        if (!Thread.currentThread().isVirtual())
+            return BOUND.get();
+
+        QueryKeeperContext inherited = INHERITED.get();
+        return inherited != null && !inherited.isClosed() ? inherited : null;
+    }
+
+    static void bind(QueryKeeperContext context) {
+        if (!Thread.currentThread().isVirtual())
+            BOUND.set(context);
+        INHERITED.set(context);
+    }
+
+    static void unbind() {
+        BOUND.remove();
+        INHERITED.remove();
+    }
+
+    static QueryKeeperContext fallback() {
+        if (Thread.currentThread().isVirtual())
+            return VIRTUAL_FALLBACK.get();
+        return FALLBACK.get();
+    }
+
+    static void clearFallback() {
+        FALLBACK.remove();
+    }
+
+    static void resetSharedFallback() {
+        VIRTUAL_FALLBACK.set(QueryKeeperContext.newFallback());
+    }
+}
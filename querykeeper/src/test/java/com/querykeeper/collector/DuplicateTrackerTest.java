@@ -0,0 +1,87 @@
+package com.querykeeper.collector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DuplicateTrackerTest {
+
+    private static final QueryLog LOG = new QueryLog("SELECT name FROM users WHERE id = ?",
+            Collections.singletonMap(1, 1), 0, "caller");
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        DuplicateTracker tracker = new DuplicateTracker();
+        for (long hash = 0; hash < 10_000; hash++) {
+            tracker.record(LOG, hash);
+        }
+
+        assertEquals(10_000, tracker.getDistinctCount());
+        assertEquals(0, tracker.getTotalDuplicates());
+        assertEquals(0, tracker.getDuplicates().size());
+    }
+
+    @Test
+    void keepsCountsOfCollidingHashesAcrossGrowth() {
+        DuplicateTracker tracker = new DuplicateTracker();
+        // Equal low bits: every hash probes from the same slot
+        for (int round = 0; round < 3; round++) {
+            for (long i = 1; i <= 1000; i++) {
+                tracker.record(LOG, i << 32);
+            }
+        }
+
+        assertEquals(1000, tracker.getDistinctCount());
+        assertEquals(2000, tracker.getTotalDuplicates());
+        List<DuplicateTracker.Duplicate> duplicates = tracker.getDuplicates();
+        assertEquals(1000, duplicates.size());
+        for (DuplicateTracker.Duplicate duplicate : duplicates) {
+            assertEquals(3, duplicate.getCount());
+        }
+    }
+
+    @Test
+    void countsExecutionsRecordedConcurrently() throws InterruptedException {
+        DuplicateTracker tracker = new DuplicateTracker();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (long i = 0; i < 1000; i++) {
+                    tracker.record(LOG, Fingerprints.mix(i));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, tracker.getDistinctCount());
+        assertEquals(3000, tracker.getTotalDuplicates());
+        assertEquals(1000, tracker.getDuplicates().size());
+    }
+
+    @Test
+    void ignoresInternalQueries() {
+        DuplicateTracker tracker = new DuplicateTracker();
+        QueryLog internal = new QueryLog("SELECT 1", Collections.emptyMap(), 0, "caller");
+        tracker.record(internal);
+        tracker.record(internal);
+
+        assertEquals(0, tracker.getDistinctCount());
+    }
+
+    @Test
+    void keepsTheSecondExecutionAsSample() {
+        DuplicateTracker tracker = new DuplicateTracker();
+        QueryLog first = new QueryLog("SELECT name FROM users WHERE id = 1", Collections.emptyMap(), 0, "a");
+        QueryLog second = new QueryLog("SELECT name FROM users WHERE id = 1", Collections.emptyMap(), 0, "b");
+        tracker.record(first);
+        tracker.record(second);
+
+        assertEquals("b", tracker.getDuplicates().get(0).getSample().caller);
+    }
+}
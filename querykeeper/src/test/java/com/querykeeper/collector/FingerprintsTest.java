@@ -0,0 +1,60 @@
+package com.querykeeper.collector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+class FingerprintsTest {
+
+    @Test
+    void hashesParametersInIndexOrder() {
+        Map<Integer, Object> ascending = new LinkedHashMap<>();
+        ascending.put(1, "a");
+        ascending.put(2, 7L);
+        Map<Integer, Object> descending = new LinkedHashMap<>();
+        descending.put(2, 7);
+        descending.put(1, "a");
+
+        assertEquals(Fingerprints.hashParameters(0, ascending), Fingerprints.hashParameters(0, descending));
+        assertEquals(Fingerprints.hashParameters(0, ascending),
+                Fingerprints.hashParameters(0, new TreeMap<>(descending)));
+    }
+
+    @Test
+    void hashesNonPositiveIndexes() {
+        Map<Integer, Object> parameters = new HashMap<>();
+        parameters.put(0, "a");
+        parameters.put(-1, "b");
+        Map<Integer, Object> other = new HashMap<>(parameters);
+        other.put(-1, "c");
+
+        assertNotEquals(Fingerprints.hashParameters(0, parameters), Fingerprints.hashParameters(0, other));
+    }
+
+    @Test
+    void distinguishesStringsWithEqualHashCodes() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotEquals(Fingerprints.hashValue("Aa"), Fingerprints.hashValue("BB"));
+        assertNotEquals(Fingerprints.hashValue("AaAa"), Fingerprints.hashValue("BBBB"));
+        assertNotEquals(Fingerprints.hashParameters(0, Collections.singletonMap(1, "Aa")),
+                Fingerprints.hashParameters(0, Collections.singletonMap(1, "BB")));
+    }
+
+    @Test
+    void distinguishesByteArraysWithEqualHashCodes() {
+        byte[] first = { 0, 31 };
+        byte[] second = { 1, 0 };
+
+        assertEquals(Arrays.hashCode(first), Arrays.hashCode(second));
+        assertNotEquals(Fingerprints.hashValue(first), Fingerprints.hashValue(second));
+        assertEquals(Fingerprints.hashValue(first), Fingerprints.hashValue(first.clone()));
+    }
+}
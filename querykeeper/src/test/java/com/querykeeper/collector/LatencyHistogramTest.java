@@ -0,0 +1,86 @@
+package com.querykeeper.collector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesHaveExactBuckets() {
+        for (long value = 0; value < 16; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertEquals(value, LatencyHistogram.upperBoundOf(bucket), "bucket of " + value);
+        }
+    }
+
+    @Test
+    void bucketsAreContiguous() {
+        int last = LatencyHistogram.bucketOf(Long.MAX_VALUE);
+        for (int bucket = 0; bucket < last; bucket++) {
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper), "upper bound of bucket " + bucket);
+            assertEquals(bucket + 1, LatencyHistogram.bucketOf(upper + 1), "value after bucket " + bucket);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(last));
+    }
+
+    @Test
+    void upperBoundIsWithinOneEighthOfTheValue() {
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            long upper = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+            assertTrue(upper >= value, value + " above its bucket");
+            assertTrue(upper - value <= value / 8, value + " reported as " + upper);
+        }
+    }
+
+    @Test
+    void reportsPercentilesOfRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), histogram.getMinNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMaxNanos());
+        assertWithinOneEighth(50, histogram.getPercentileMs(50));
+        assertWithinOneEighth(99, histogram.getPercentileMs(99));
+        assertEquals(100.0, histogram.getPercentileMs(100), 0.0);
+        assertEquals(100.0, histogram.getMaxMs(), 0.0);
+    }
+
+    @Test
+    void percentileIsCappedAtTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+
+        assertEquals(1000, histogram.getPercentileNanos(50));
+        assertEquals(1000, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getPercentileNanos(99));
+        assertEquals(0, histogram.getMinNanos());
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    @Test
+    void negativeDurationsCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+    }
+
+    private static void assertWithinOneEighth(double expectedMs, double actualMs) {
+        assertTrue(actualMs >= expectedMs && actualMs <= expectedMs * 1.125, expectedMs + "ms reported as " + actualMs);
+    }
+}
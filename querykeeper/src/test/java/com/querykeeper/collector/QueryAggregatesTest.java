@@ -0,0 +1,80 @@
+package com.querykeeper.collector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class QueryAggregatesTest {
+
+    @Test
+    void foldsSqlStringsPastTheCapIntoTheirShape() {
+        QueryAggregates aggregates = new QueryAggregates();
+        int count = QueryAggregates.MAX_SQL_STRINGS + 100;
+        for (int i = 0; i < count; i++) {
+            record(aggregates, "SELECT name FROM users WHERE id = " + i, "caller");
+        }
+
+        List<QueryAggregates.SqlStats> sqlStats = aggregates.getSqlStats();
+        assertEquals(QueryAggregates.MAX_SQL_STRINGS + 1, sqlStats.size());
+        QueryAggregates.SqlStats folded = sqlStats.get(sqlStats.size() - 1);
+        assertEquals("select name from users where id = ?", folded.getSql());
+        assertEquals(100, folded.getExecutions());
+        assertEquals(count, aggregates.getExecutionCount());
+        assertEquals(count, aggregates.getStatementCount("SELECT"));
+    }
+
+    @Test
+    void countsShapesPastTheFoldingCapTogether() {
+        QueryAggregates aggregates = new QueryAggregates();
+        int count = QueryAggregates.MAX_SQL_STRINGS + QueryAggregates.MAX_FOLDED_SHAPES + 10;
+        for (int i = 0; i < count; i++) {
+            record(aggregates, "SELECT name FROM users_" + i, "caller");
+        }
+
+        List<QueryAggregates.SqlStats> sqlStats = aggregates.getSqlStats();
+        assertEquals(QueryAggregates.MAX_SQL_STRINGS + QueryAggregates.MAX_FOLDED_SHAPES + 1, sqlStats.size());
+        QueryAggregates.SqlStats other = sqlStats.get(sqlStats.size() - 1);
+        assertEquals(QueryAggregates.OTHER_SQL, other.getSql());
+        assertEquals(10, other.getExecutions());
+    }
+
+    @Test
+    void countsSelectsPastTheTrackingCaps() {
+        QueryAggregates aggregates = new QueryAggregates();
+        for (int i = 0; i < QueryAggregates.MAX_CALL_SITES_PER_SHAPE + 5; i++) {
+            record(aggregates, "SELECT name FROM users WHERE id = 1", "caller-" + i);
+        }
+
+        assertEquals(QueryAggregates.MAX_CALL_SITES_PER_SHAPE, aggregates.getSelectCallSites().size());
+        assertEquals(5, aggregates.getUntrackedSelects());
+        assertEquals(1, aggregates.getExplainSamples().size());
+    }
+
+    @Test
+    void forwardsBytesOfTheLastRowWhenClosedEarly() {
+        QueryAggregates aggregates = new QueryAggregates();
+        QueryLog log = record(aggregates, "SELECT name FROM users", "caller");
+
+        ResultSetStats stats = log.openResultSetStats(null);
+        stats.addFetch(true, 10);
+        stats.addBytes(8);
+        stats.addFetch(true, 10);
+        stats.addBytes(4);
+        stats.close();
+
+        assertEquals(2, aggregates.getRowsFetched());
+        assertEquals(12, aggregates.getBytesFetched());
+        assertEquals(12, stats.getApproximateBytes());
+        assertTrue(aggregates.getFetchNanos() >= 20);
+    }
+
+    private static QueryLog record(QueryAggregates aggregates, String sql, String caller) {
+        QueryLog log = new QueryLog(sql, Collections.emptyMap(), 0, caller);
+        aggregates.record(log, log.fingerprintHash());
+        return log;
+    }
+}
@@ -0,0 +1,68 @@
+package com.querykeeper.collector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class QueryJournalTest {
+
+    @Test
+    void keepsTheMostRecentQueriesAfterWrappingAround() {
+        QueryJournal journal = new QueryJournal(4);
+        List<QueryLog> logs = logs(10);
+        logs.forEach(journal::add);
+
+        List<QueryLog> snapshot = journal.snapshot();
+
+        assertEquals(4, snapshot.size());
+        for (int i = 0; i < 4; i++) {
+            assertSame(logs.get(6 + i), snapshot.get(i));
+        }
+        assertEquals(10, journal.getTotal());
+        assertEquals(6, journal.getDropped());
+    }
+
+    @Test
+    void wrapsAroundExactlyAtCapacity() {
+        QueryJournal journal = new QueryJournal(4);
+        List<QueryLog> logs = logs(5);
+
+        logs.subList(0, 4).forEach(journal::add);
+        assertEquals(logs.subList(0, 4), journal.snapshot());
+        assertEquals(0, journal.getDropped());
+
+        journal.add(logs.get(4));
+        assertEquals(logs.subList(1, 5), journal.snapshot());
+        assertEquals(1, journal.getDropped());
+    }
+
+    @Test
+    void keepsEveryQueryWithoutCapacity() {
+        QueryJournal journal = new QueryJournal(0);
+        List<QueryLog> logs = logs(1000);
+        logs.forEach(journal::add);
+
+        assertEquals(logs, journal.snapshot());
+        assertEquals(0, journal.getDropped());
+    }
+
+    @Test
+    void emptyJournalHasEmptySnapshot() {
+        assertTrue(new QueryJournal(4).snapshot().isEmpty());
+        assertTrue(new QueryJournal(0).snapshot().isEmpty());
+    }
+
+    private static List<QueryLog> logs(int count) {
+        List<QueryLog> logs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            logs.add(new QueryLog("SELECT name FROM users WHERE id = " + i, Collections.emptyMap(), 0, "caller"));
+        }
+        return logs;
+    }
+}
@@ -0,0 +1,83 @@
+package com.querykeeper.collector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class QueryLogBufferTest {
+
+    @Test
+    void keepsAppendOrderAcrossChunks() {
+        QueryLogBuffer buffer = new QueryLogBuffer();
+        List<QueryLog> logs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            QueryLog log = log("main", i);
+            logs.add(log);
+            buffer.add(log);
+        }
+
+        assertEquals(1000, buffer.size());
+        assertEquals(logs, buffer.snapshot());
+    }
+
+    @Test
+    void keepsEveryEntryOfConcurrentWriters() throws Exception {
+        int threads = 8;
+        int perThread = 20_000;
+        QueryLogBuffer buffer = new QueryLogBuffer();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String writer = "writer-" + t;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        buffer.add(log(writer, i));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : writers) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<QueryLog> snapshot = buffer.snapshot();
+        assertEquals(threads * perThread, buffer.size());
+        assertEquals(threads * perThread, snapshot.size());
+
+        // Each writer's entries appear complete and in the order it appended them
+        int[] next = new int[threads];
+        for (QueryLog log : snapshot) {
+            int writer = Integer.parseInt(log.caller.substring("writer-".length()));
+            assertEquals(next[writer]++, (int) log.durationMs, log.caller);
+        }
+        for (int t = 0; t < threads; t++) {
+            assertEquals(perThread, next[t]);
+        }
+    }
+
+    @Test
+    void emptyBufferHasEmptySnapshot() {
+        assertTrue(new QueryLogBuffer().snapshot().isEmpty());
+    }
+
+    private static QueryLog log(String caller, int sequence) {
+        return new QueryLog("SELECT name FROM users", Collections.emptyMap(), sequence, caller);
+    }
+}
@@ -0,0 +1,52 @@
+package com.querykeeper.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.querykeeper.collector.QueryProfile;
+
+class BaselineFileTest {
+
+    @Test
+    void keepsOneEntryPerTestWhenReplacing() throws IOException {
+        Path directory = Files.createTempDirectory("baselines");
+        String previous = System.setProperty(BaselineFile.DIRECTORY_PROPERTY, directory.toString());
+        try {
+            BaselineFile file = BaselineFile.forClass(BaselineFileTest.class);
+            file.append("b", profile(1));
+            file.append("a", profile(1));
+            for (int run = 2; run <= 5; run++) {
+                file.replace("a", profile(run));
+            }
+
+            List<String> entries = Files.readAllLines(file.getPath(), StandardCharsets.UTF_8).stream()
+                    .filter(line -> line.startsWith("test\t"))
+                    .collect(Collectors.toList());
+            assertEquals(2, entries.size());
+            assertTrue(entries.get(0).startsWith("test\ta\t"), entries.get(0));
+            assertTrue(entries.get(0).contains("rows=5"), entries.get(0));
+            assertEquals(5, file.get("a").getRows());
+            assertEquals(1, file.get("b").getRows());
+        } finally {
+            if (previous == null)
+                System.clearProperty(BaselineFile.DIRECTORY_PROPERTY);
+            else
+                System.setProperty(BaselineFile.DIRECTORY_PROPERTY, previous);
+        }
+    }
+
+    private static QueryProfile profile(long rows) {
+        return new QueryProfile(Collections.singletonMap("SELECT", 1L), Collections.singletonMap("select ?", 1L),
+                0, rows, 1000);
+    }
+}
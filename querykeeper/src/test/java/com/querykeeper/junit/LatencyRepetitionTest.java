@@ -0,0 +1,128 @@
+package com.querykeeper.junit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.testkit.engine.EngineTestKit;
+import org.junit.platform.testkit.engine.Events;
+
+import com.querykeeper.annotation.EnableQueryKeeper;
+import com.querykeeper.annotation.ExpectLatency;
+import com.querykeeper.annotation.ExpectQuery;
+import com.querykeeper.collector.LoggingDataSource;
+
+/**
+ * Runs {@code @ExpectLatency} methods through the Jupiter engine and checks
+ * that every repetition is a separate invocation.
+ */
+class LatencyRepetitionTest {
+
+    private static final DataSource DATA_SOURCE = dataSource();
+
+    private static final AtomicInteger BEFORE_EACH = new AtomicInteger();
+    private static final AtomicInteger AFTER_EACH = new AtomicInteger();
+
+    private static volatile boolean running;
+
+    @Test
+    void runsEachRepetitionAsInvocation() {
+        Events tests = run(RepeatedTests.class);
+
+        tests.assertStatistics(stats -> stats.started(5).succeeded(5).failed(0));
+        assertEquals(5, BEFORE_EACH.get());
+        assertEquals(5, AFTER_EACH.get());
+    }
+
+    @Test
+    void assertsLatencyOnLastIteration() {
+        Events tests = run(SlowTests.class);
+
+        tests.assertStatistics(stats -> stats.started(3).succeeded(2).failed(1));
+        tests.failed().stream()
+                .map(event -> event.getRequiredPayload(TestExecutionResult.class).getThrowable().get().getMessage())
+                .forEach(message -> assertTrue(message.contains("Latency exceeded"), message));
+    }
+
+    private static Events run(Class<?> testClass) {
+        BEFORE_EACH.set(0);
+        AFTER_EACH.set(0);
+        running = true;
+        try {
+            return EngineTestKit.engine("junit-jupiter")
+                    .selectors(selectClass(testClass))
+                    .execute()
+                    .testEvents();
+        } finally {
+            running = false;
+        }
+    }
+
+    private static void select() {
+        try (Connection connection = DATA_SOURCE.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT X FROM SYSTEM_RANGE(1, 10) WHERE X = 1")) {
+            resultSet.next();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static DataSource dataSource() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:latency;DB_CLOSE_DELAY=-1");
+        return new LoggingDataSource(h2, "dataSource");
+    }
+
+    @EnableQueryKeeper
+    static class RepeatedTests {
+
+        private int invocations;
+
+        @BeforeEach
+        void setUp() {
+            assumeTrue(running);
+            BEFORE_EACH.incrementAndGet();
+        }
+
+        @AfterEach
+        void tearDown() {
+            AFTER_EACH.incrementAndGet();
+        }
+
+        @ExpectLatency(warmup = 2, iterations = 3)
+        @ExpectQuery(select = 1)
+        void selectsOnce() {
+            assertEquals(0, invocations++, "repetition reused the test instance");
+            select();
+        }
+    }
+
+    @EnableQueryKeeper
+    static class SlowTests {
+
+        @BeforeEach
+        void setUp() {
+            assumeTrue(running);
+        }
+
+        @ExpectLatency(value = 1, warmup = 1, iterations = 2)
+        void sleeps() throws InterruptedException {
+            Thread.sleep(20);
+        }
+    }
+}
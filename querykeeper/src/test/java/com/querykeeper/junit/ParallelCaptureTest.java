@@ -0,0 +1,197 @@
+package com.querykeeper.junit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.testkit.engine.EngineTestKit;
+import org.junit.platform.testkit.engine.Events;
+
+import com.querykeeper.annotation.EnableQueryKeeper;
+import com.querykeeper.annotation.ExpectNoDb;
+import com.querykeeper.annotation.ExpectQuery;
+import com.querykeeper.collector.LoggingDataSource;
+
+/**
+ * Runs test classes through the Jupiter engine with parallel execution
+ * enabled and checks that concurrent tests do not see each other's queries.
+ */
+class ParallelCaptureTest {
+
+    private static final DataSource DATA_SOURCE = dataSource();
+
+    private static volatile boolean running;
+    private static volatile CountDownLatch started;
+    private static volatile CountDownLatch finished;
+
+    @Test
+    void isolatesQueriesOfConcurrentTests() {
+        Events tests = run(ConcurrentTests.class, 3);
+
+        tests.assertStatistics(stats -> stats.started(3).succeeded(3).failed(0));
+    }
+
+    @Test
+    void excludesSetupQueriesOfConcurrentTests() {
+        Events tests = run(SetupTests.class, 2);
+
+        tests.assertStatistics(stats -> stats.started(2).succeeded(2).failed(0));
+    }
+
+    @Test
+    void failsTestsThatMayHaveMissedUnattributedQueries() {
+        Events tests = run(UnattributedTests.class, 2);
+
+        tests.assertStatistics(stats -> stats.started(2).failed(2));
+        tests.failed().stream()
+                .map(event -> event.getRequiredPayload(TestExecutionResult.class).getThrowable().get().getMessage())
+                .forEach(message -> assertTrue(message.contains("unattributed"), message));
+    }
+
+    private static Events run(Class<?> testClass, int concurrentTests) {
+        started = new CountDownLatch(concurrentTests);
+        finished = new CountDownLatch(concurrentTests);
+        running = true;
+        try {
+            return EngineTestKit.engine("junit-jupiter")
+                    .configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                    .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                    .configurationParameter("junit.jupiter.execution.parallel.config.strategy", "fixed")
+                    .configurationParameter("junit.jupiter.execution.parallel.config.fixed.parallelism",
+                            String.valueOf(concurrentTests + 1))
+                    .selectors(selectClass(testClass))
+                    .execute()
+                    .testEvents();
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Holds every test of the class open until all of them have started, so
+     * that their contexts are active at the same time.
+     */
+    private static void awaitOthers(CountDownLatch latch) throws InterruptedException {
+        latch.countDown();
+        assertTrue(latch.await(10, TimeUnit.SECONDS), "tests did not run concurrently");
+    }
+
+    private static void select(int times) {
+        try (Connection connection = DATA_SOURCE.getConnection();
+                Statement statement = connection.createStatement()) {
+            for (int i = 0; i < times; i++) {
+                try (ResultSet resultSet = statement.executeQuery("SELECT X FROM SYSTEM_RANGE(1, 10) WHERE X = " + i)) {
+                    resultSet.next();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static DataSource dataSource() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:parallel;DB_CLOSE_DELAY=-1");
+        return new LoggingDataSource(h2, "dataSource");
+    }
+
+    @EnableQueryKeeper
+    static class ConcurrentTests {
+
+        @BeforeEach
+        void onlyFromParallelCaptureTest() {
+            assumeTrue(running);
+        }
+
+        @Test
+        @ExpectQuery(select = 1)
+        void one() throws InterruptedException {
+            awaitOthers(started);
+            select(1);
+            awaitOthers(finished);
+        }
+
+        @Test
+        @ExpectQuery(select = 2)
+        void two() throws InterruptedException {
+            awaitOthers(started);
+            select(2);
+            awaitOthers(finished);
+        }
+
+        @Test
+        @ExpectNoDb
+        void none() throws InterruptedException {
+            awaitOthers(started);
+            awaitOthers(finished);
+        }
+    }
+
+    @EnableQueryKeeper
+    static class SetupTests {
+
+        @BeforeEach
+        void insertFixture(TestInfo testInfo) throws InterruptedException {
+            assumeTrue(running);
+            if (testInfo.getTestMethod().get().getName().equals("withFixture")) {
+                // Runs while the sibling's measured window is open
+                awaitOthers(started);
+                select(3);
+            }
+        }
+
+        @Test
+        @ExpectQuery(select = 1)
+        void withFixture() throws InterruptedException {
+            select(1);
+            awaitOthers(finished);
+        }
+
+        @Test
+        @ExpectNoDb
+        void alongsideFixture() throws InterruptedException {
+            awaitOthers(started);
+            awaitOthers(finished);
+        }
+    }
+
+    @EnableQueryKeeper
+    static class UnattributedTests {
+
+        @BeforeEach
+        void onlyFromParallelCaptureTest() {
+            assumeTrue(running);
+        }
+
+        @Test
+        @ExpectNoDb
+        void queriesOnUnwrappedThread() throws InterruptedException {
+            awaitOthers(started);
+            Thread thread = new Thread(() -> select(1));
+            thread.start();
+            thread.join();
+            awaitOthers(finished);
+        }
+
+        @Test
+        @ExpectNoDb
+        void runsAlongside() throws InterruptedException {
+            awaitOthers(started);
+            awaitOthers(finished);
+        }
+    }
+}
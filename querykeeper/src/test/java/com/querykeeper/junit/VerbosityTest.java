@@ -0,0 +1,26 @@
+package com.querykeeper.junit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class VerbosityTest {
+
+    @Test
+    void parsesNamesCaseInsensitively() {
+        assertEquals(Verbosity.FULL, Verbosity.parse("full"));
+        assertEquals(Verbosity.ON_FAILURE, Verbosity.parse(" on-failure "));
+        assertEquals(Verbosity.SILENT, Verbosity.parse("SILENT"));
+    }
+
+    @Test
+    void defaultsToOnFailure() {
+        assertEquals(Verbosity.ON_FAILURE, Verbosity.parse(null));
+        assertEquals(Verbosity.ON_FAILURE, Verbosity.parse(" "));
+    }
+
+    @Test
+    void fallsBackToOnFailureForUnknownValues() {
+        assertEquals(Verbosity.ON_FAILURE, Verbosity.parse("verbose"));
+    }
+}
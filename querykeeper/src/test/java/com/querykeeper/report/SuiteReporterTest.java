@@ -0,0 +1,63 @@
+package com.querykeeper.report;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class SuiteReporterTest {
+
+    @Test
+    void mergesThePartFilesOfEveryFork() throws IOException {
+        Path directory = Files.createTempDirectory("querykeeper-report");
+        part(directory, "worker-1", test("OrderTest", "fast", 5, 1.0, 2.0), test("OrderTest", "slow", 1, 0.5, 90.0));
+        part(directory, "worker-2", test("UserTest", "find", 9, 3.0, 4.0));
+
+        SuiteReporter.merge(directory);
+
+        String json = new String(Files.readAllBytes(directory.resolve("querykeeper-report.json")),
+                StandardCharsets.UTF_8);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> report = (Map<String, Object>) JsonReader.parse(json);
+        assertEquals(3, ((List<?>) report.get("tests")).size());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> summary = (Map<String, Object>) report.get("summary");
+        assertEquals(15.0, (Double) summary.get("statements"), 0);
+        assertEquals(96.0, (Double) summary.get("totalDbMs"), 0.001);
+    }
+
+    @Test
+    void ranksTestsByTotalDbTime() throws IOException {
+        Path directory = Files.createTempDirectory("querykeeper-report");
+        part(directory, "main", test("OrderTest", "executes", 5, 10.0, 11.0),
+                test("OrderTest", "fetches", 1, 0.5, 90.0));
+
+        SuiteReporter.merge(directory);
+
+        String html = new String(Files.readAllBytes(directory.resolve("querykeeper-report.html")),
+                StandardCharsets.UTF_8);
+        String byDbTime = html.substring(html.indexOf("Worst tests by DB time"));
+        assertTrue(byDbTime.indexOf("OrderTest#fetches") < byDbTime.indexOf("OrderTest#executes"), byDbTime);
+    }
+
+    private static void part(Path directory, String fork, String... tests) throws IOException {
+        Files.write(directory.resolve(SuiteReporter.PART_PREFIX + fork + SuiteReporter.PART_SUFFIX),
+                Arrays.asList(tests), StandardCharsets.UTF_8);
+    }
+
+    private static String test(String className, String method, long statements, double dbMs, double totalDbMs) {
+        return "{\"class\":\"com.example." + className + "\",\"method\":\"" + method + "\",\"displayName\":\""
+                + method + "()\",\"status\":\"PASSED\",\"elapsedMs\":100.0,\"dbMs\":" + dbMs + ",\"totalDbMs\":"
+                + totalDbMs + ",\"statements\":" + statements + ",\"executions\":" + statements
+                + ",\"select\":" + statements + ",\"insert\":0,\"update\":0,\"delete\":0,\"other\":0,\"rows\":0,"
+                + "\"duplicates\":0,\"nPlusOne\":[],\"failures\":[]}";
+    }
+}
@@ -0,0 +1,144 @@
+package com.querykeeper.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.querykeeper.collector.LoggingDataSource;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+class QueryBudgetWebFilterTest {
+
+    private final List<RuntimeQueryScope> completed = new CopyOnWriteArrayList<>();
+
+    private DataSource dataSource;
+    private QueryBudgetWebFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:webflux;DB_CLOSE_DELAY=-1");
+        dataSource = new LoggingDataSource(h2, "dataSource");
+
+        QueryKeeperRuntimeProperties properties = new QueryKeeperRuntimeProperties();
+        properties.setEnabled(true);
+        RuntimeQueryListener listener = new RuntimeQueryListener() {
+            @Override
+            public void onRequestCompleted(RuntimeQueryScope scope) {
+                completed.add(scope);
+            }
+        };
+        filter = new QueryBudgetWebFilter(new RuntimeQueryMonitor(properties, Collections.singletonList(listener)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.destroy();
+    }
+
+    @Test
+    void countsBlockingQueryOnBoundedElastic() throws InterruptedException {
+        RouterFunction<ServerResponse> route = RouterFunctions.route()
+                .GET("/users", request -> Mono.fromCallable(this::selectOne)
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(value -> ServerResponse.ok().bodyValue(value)))
+                .build();
+
+        get(route, "/users");
+
+        awaitCompleted(1);
+        assertEquals(1, completed.get(0).getQueryCount());
+    }
+
+    @Test
+    void countsQueryAfterTimerSignal() throws InterruptedException {
+        RouterFunction<ServerResponse> route = RouterFunctions.route()
+                .GET("/users", request -> Mono.delay(Duration.ofMillis(10))
+                        .map(tick -> selectOne() + selectOne())
+                        .flatMap(value -> ServerResponse.ok().bodyValue(value)))
+                .build();
+
+        get(route, "/users");
+
+        awaitCompleted(1);
+        assertEquals(2, completed.get(0).getQueryCount());
+    }
+
+    @Test
+    void doesNotLeakScopeIntoLaterRequests() throws InterruptedException {
+        RouterFunction<ServerResponse> route = RouterFunctions.route()
+                .GET("/users", request -> Mono.fromCallable(this::selectOne)
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(value -> ServerResponse.ok().bodyValue(value)))
+                .build();
+
+        get(route, "/users");
+        get(route, "/users");
+
+        awaitCompleted(2);
+        assertEquals(1, completed.get(0).getQueryCount());
+        assertEquals(1, completed.get(1).getQueryCount());
+    }
+
+    @Test
+    void keepsHooksWhileAnotherFilterIsDestroyed() throws InterruptedException {
+        QueryBudgetWebFilter other = new QueryBudgetWebFilter(
+                new RuntimeQueryMonitor(new QueryKeeperRuntimeProperties(), Collections.emptyList()));
+        other.destroy();
+        other.destroy();
+
+        countsBlockingQueryOnBoundedElastic();
+    }
+
+    private void get(RouterFunction<ServerResponse> route, String path) {
+        WebTestClient.bindToRouterFunction(route)
+                .webFilter(filter)
+                .build()
+                .get().uri(path)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    /**
+     * The scope is ended in {@code doFinally}, which may run just after the
+     * client has seen the response.
+     */
+    private void awaitCompleted(int requests) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (completed.size() < requests && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(requests, completed.size());
+    }
+
+    private int selectOne() {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT 1")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
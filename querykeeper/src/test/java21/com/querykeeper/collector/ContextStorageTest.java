@@ -0,0 +1,108 @@
+package com.querykeeper.collector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs against the Java 21 {@link ContextStorage}, which the java21Test task
+ * puts ahead of the Java 8 one on the classpath.
+ */
+class ContextStorageTest {
+
+    private static final DataSource DATA_SOURCE = dataSource();
+
+    @AfterEach
+    void clear() {
+        QueryKeeperContext.clear();
+    }
+
+    @Test
+    void virtualThreadsRecordIntoTheContextOfTheirParent() throws Exception {
+        // Both contexts stay open while the other one's virtual threads run,
+        // so neither can receive queries as the only active context
+        CyclicBarrier bothOpen = new CyclicBarrier(2);
+        CyclicBarrier bothDone = new CyclicBarrier(2);
+        ExecutorService parents = Executors.newFixedThreadPool(2);
+        try {
+            Future<long[]> first = parents.submit(() -> selectInContext(3, bothOpen, bothDone));
+            Future<long[]> second = parents.submit(() -> selectInContext(5, bothOpen, bothDone));
+
+            assertCaptured(3, first.get(10, TimeUnit.SECONDS));
+            assertCaptured(5, second.get(10, TimeUnit.SECONDS));
+        } finally {
+            parents.shutdownNow();
+        }
+    }
+
+    @Test
+    void virtualThreadsOfAClosedContextDoNotRecordIntoIt() throws Exception {
+        QueryKeeperContext context = QueryKeeperContext.open();
+        context.close();
+        QueryKeeperContext.clear();
+
+        Thread thread = Thread.ofVirtual().start(() -> select(1));
+        thread.join();
+
+        assertEquals(0, context.getLogCount());
+    }
+
+    /**
+     * Opens a context on the calling thread and runs {@code queries} selects,
+     * each on its own virtual thread. Returns the captured and unattributed
+     * query counts.
+     */
+    private static long[] selectInContext(int queries, CyclicBarrier bothOpen, CyclicBarrier bothDone)
+            throws Exception {
+        QueryKeeperContext context = QueryKeeperContext.open();
+        try {
+            bothOpen.await(10, TimeUnit.SECONDS);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < queries; i++) {
+                    int id = i + 1;
+                    executor.submit(() -> select(id));
+                }
+            }
+            bothDone.await(10, TimeUnit.SECONDS);
+            return new long[] { context.getLogCount(), context.getUnattributedQueries() };
+        } finally {
+            context.close();
+            QueryKeeperContext.clear();
+        }
+    }
+
+    private static void assertCaptured(long queries, long[] counts) {
+        assertEquals(queries, counts[0], "captured");
+        assertEquals(0, counts[1], "unattributed");
+    }
+
+    private static void select(int id) {
+        try (Connection connection = DATA_SOURCE.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT X FROM SYSTEM_RANGE(1, 10) WHERE X = " + id)) {
+            resultSet.next();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static DataSource dataSource() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:virtual;DB_CLOSE_DELAY=-1");
+        return new LoggingDataSource(h2, "dataSource");
+    }
+}